@@ -0,0 +1,71 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Alphabet.toInt and toChar for CharacterRange and
+ *  FreeCharacter alphabets.
+ *  @author nishuang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlphabetBenchmark {
+
+    /** Kind of alphabet: "range" or "free". */
+    @Param({ "range", "free" })
+    public String kind;
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Set up the alphabet. */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures(size);
+        _alphabet = fixtures.alphabet(kind, size);
+        _chars = fixtures.message(_alphabet, size).toCharArray();
+    }
+
+    /** Find the index of SIZE characters. */
+    @Benchmark
+    public int toInt() {
+        int sum = 0;
+        for (char c : _chars) {
+            sum += _alphabet.toInt(c);
+        }
+        return sum;
+    }
+
+    /** Find the character at every index. */
+    @Benchmark
+    public int toChar() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _alphabet.toChar(i);
+        }
+        return sum;
+    }
+
+    /** Alphabet under test. */
+    private Alphabet _alphabet;
+
+    /** SIZE random characters of the alphabet. */
+    private char[] _chars;
+
+}
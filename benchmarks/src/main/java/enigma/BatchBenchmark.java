@@ -0,0 +1,122 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput, in machine-keystrokes, of converting one short message
+ *  (or a single key) on each of many machines with the same rotors but
+ *  different settings: with a MachineBatch, and with a separate Machine
+ *  per message.  The machines carry on from where the previous
+ *  invocation left them, which does not change the work per keystroke.
+ *  @author nishuang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(BatchBenchmark.MACHINES * BatchBenchmark.LENGTH)
+public class BatchBenchmark {
+
+    /** Number of machines (and messages). */
+    static final int MACHINES = 1024;
+
+    /** Number of characters in each message. */
+    static final int LENGTH = 64;
+
+    /** Number of rotor slots, including the reflector. */
+    @Param({ "3", "5" })
+    public int rotors;
+
+    /** Set up the machines and messages. */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures(rotors);
+        Alphabet alphabet = fixtures.alphabet("range", 26);
+        _template = fixtures.configured(alphabet, rotors);
+        _settings = new String[MACHINES];
+        _messages = new String[MACHINES];
+        for (int m = 0; m < MACHINES; m += 1) {
+            _settings[m] = fixtures.message(alphabet, rotors - 1);
+            _messages[m] = fixtures.message(alphabet, LENGTH);
+        }
+        _machines = new Machine[MACHINES];
+        _batch = new MachineBatch(_template, MACHINES);
+        _keys = new int[MACHINES];
+        for (int m = 0; m < MACHINES; m += 1) {
+            _machines[m] = new Machine(_template);
+            _machines[m].setRotors(_settings[m]);
+            _batch.setRotors(m, _settings[m]);
+            _keys[m] = alphabet.toInt(_messages[m].charAt(0));
+        }
+    }
+
+    /** Convert every message with the batch. */
+    @Benchmark
+    public String[] batch() {
+        return _batch.convert(_messages);
+    }
+
+    /** Convert every message with its own machine. */
+    @Benchmark
+    public String[] separate() {
+        String[] result = new String[MACHINES];
+        for (int m = 0; m < MACHINES; m += 1) {
+            result[m] = _machines[m].convert(_messages[m]);
+        }
+        return result;
+    }
+
+    /** Strike one key on every machine of the batch. */
+    @Benchmark
+    @OperationsPerInvocation(MACHINES)
+    public int[] batchKeystroke() {
+        _batch.convert(_keys, _output);
+        return _output;
+    }
+
+    /** Strike one key on every separate machine. */
+    @Benchmark
+    @OperationsPerInvocation(MACHINES)
+    public int[] separateKeystroke() {
+        for (int m = 0; m < MACHINES; m += 1) {
+            _output[m] = _machines[m].convert(_keys[m]);
+        }
+        return _output;
+    }
+
+    /** Configured machine copied for each message. */
+    private Machine _template;
+
+    /** Initial rotor settings for each message. */
+    private String[] _settings;
+
+    /** The messages. */
+    private String[] _messages;
+
+    /** One machine per message. */
+    private Machine[] _machines;
+
+    /** One batch for all messages. */
+    private MachineBatch _batch;
+
+    /** The first character index of each message. */
+    private int[] _keys;
+
+    /** Converted character indices. */
+    private final int[] _output = new int[MACHINES];
+
+}
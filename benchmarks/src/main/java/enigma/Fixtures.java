@@ -0,0 +1,112 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Randomly generated alphabets, rotors and machines of a given size for
+ *  the benchmarks.  Every fixture is drawn from a fixed seed, so runs
+ *  with the same parameters measure the same data.
+ *  @author nishuang
+ */
+class Fixtures {
+
+    /** First character of generated alphabets of more than 26
+     *  characters, which start a block of characters without case
+     *  (Alphabets fold lower case into upper case). */
+    static final char WIDE_FIRST = '\u4e00';
+
+    /** A source of fixtures seeded with SEED. */
+    Fixtures(long seed) {
+        _random = new Random(seed);
+    }
+
+    /** Return an alphabet of SIZE consecutive characters (upper-case
+     *  letters if SIZE <= 26): a CharacterRange if KIND is "range", and
+     *  otherwise a FreeCharacter listing them in shuffled order. */
+    Alphabet alphabet(String kind, int size) {
+        char first = size <= 26 ? 'A' : WIDE_FIRST;
+        if (kind.equals("range")) {
+            return new CharacterRange(first, (char) (first + size - 1));
+        }
+        int[] order = shuffle(size);
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i += 1) {
+            chars[i] = (char) (first + order[i]);
+        }
+        return new FreeCharacter(new String(chars));
+    }
+
+    /** Return a random permutation of ALPHABET. */
+    Permutation permutation(Alphabet alphabet) {
+        return new Permutation(shuffle(alphabet.size()), alphabet);
+    }
+
+    /** Return a random permutation of ALPHABET, which must have an even
+     *  size, made entirely of 2-cycles, as a reflector needs. */
+    Permutation involution(Alphabet alphabet) {
+        int[] order = shuffle(alphabet.size());
+        int[] forward = new int[order.length];
+        for (int i = 0; i + 1 < order.length; i += 2) {
+            forward[order[i]] = order[i + 1];
+            forward[order[i + 1]] = order[i];
+        }
+        return new Permutation(forward, alphabet);
+    }
+
+    /** Return an unconfigured machine over ALPHABET with ROTORS slots: a
+     *  reflector named "R" and ROTORS - 1 moving rotors named "M1",
+     *  "M2", ..., each with one notch at a random position. */
+    Machine machine(Alphabet alphabet, int rotors) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("R", involution(alphabet)));
+        for (int i = 1; i < rotors; i += 1) {
+            char notch = alphabet.toChar(_random.nextInt(alphabet.size()));
+            all.add(new MovingRotor("M" + i, permutation(alphabet),
+                                    String.valueOf(notch)));
+        }
+        return new Machine(alphabet, rotors, rotors - 1, all);
+    }
+
+    /** Return a machine made by machine(ALPHABET, ROTORS) with its rotors
+     *  inserted in order, random settings and a random plugboard. */
+    Machine configured(Alphabet alphabet, int rotors) {
+        Machine result = machine(alphabet, rotors);
+        String[] names = new String[rotors];
+        names[0] = "R";
+        for (int i = 1; i < rotors; i += 1) {
+            names[i] = "M" + i;
+        }
+        result.insertRotors(names);
+        result.setRotors(message(alphabet, rotors - 1));
+        result.setPlugboard(involution(alphabet));
+        return result;
+    }
+
+    /** Return a random message of LENGTH characters from ALPHABET. */
+    String message(Alphabet alphabet, int length) {
+        char[] result = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = alphabet.toChar(_random.nextInt(alphabet.size()));
+        }
+        return new String(result);
+    }
+
+    /** Return a random permutation of 0 .. N-1. */
+    private int[] shuffle(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i -= 1) {
+            int k = _random.nextInt(i + 1);
+            int t = result[i];
+            result[i] = result[k];
+            result[k] = t;
+        }
+        return result;
+    }
+
+    /** Source of randomness. */
+    private final Random _random;
+
+}
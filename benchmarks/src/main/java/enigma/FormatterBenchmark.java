@@ -0,0 +1,57 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of formatting converted message lines into groups of five
+ *  as Main does, writing to a Writer that discards its output.
+ *  @author nishuang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+
+    /** Number of characters in each line. */
+    @Param({ "64", "65536" })
+    public int length;
+
+    /** Set up the line and formatter. */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures(length);
+        _line = fixtures.message(fixtures.alphabet("range", 26), length)
+            .toCharArray();
+        _formatter = new GroupFormatter(Writer.nullWriter(), 1 << 16);
+    }
+
+    /** Format one line. */
+    @Benchmark
+    public void formatLine() throws IOException {
+        _formatter.put(_line, 0, _line.length);
+        _formatter.endLine();
+    }
+
+    /** Formatter under test. */
+    private GroupFormatter _formatter;
+
+    /** Line formatted. */
+    private char[] _line;
+
+}
@@ -0,0 +1,80 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of stepping a machine and of converting whole messages,
+ *  by alphabet size, number of rotors and message length, with and
+ *  without a generated substitution path.
+ *  @author nishuang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26", "256" })
+    public int size;
+
+    /** Number of rotor slots, including the reflector. */
+    @Param({ "3", "5", "8" })
+    public int rotors;
+
+    /** Number of characters in each message. */
+    @Param({ "64", "65536" })
+    public int length;
+
+    /** Whether the machine converts through a generated path. */
+    @Param({ "false", "true" })
+    public boolean generate;
+
+    /** Set up a random machine and message. */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures(size * 31 + rotors);
+        Alphabet alphabet = fixtures.alphabet("range", size);
+        _machine = fixtures.configured(alphabet, rotors);
+        if (generate) {
+            GeneratedPath path = GeneratedPath.of(_machine);
+            if (path == null) {
+                throw new IllegalStateException("could not generate a path");
+            }
+            _machine.useGeneratedPath(path);
+        }
+        _message = fixtures.message(alphabet, length);
+    }
+
+    /** Advance the machine by one keystroke. */
+    @Benchmark
+    public void advanceMachine() {
+        _machine.advanceMachine();
+    }
+
+    /** Convert a message of LENGTH characters. */
+    @Benchmark
+    public String convert() {
+        return _machine.convert(_message);
+    }
+
+    /** Machine under test. */
+    private Machine _machine;
+
+    /** Message converted. */
+    private String _message;
+
+}
@@ -0,0 +1,87 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Permutation.permute and invert, over every index and
+ *  every character of the alphabet.
+ *  @author nishuang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Set up a random permutation. */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures(size);
+        _perm = fixtures.permutation(fixtures.alphabet("range", size));
+        _chars = fixtures.message(_perm.alphabet(), size).toCharArray();
+    }
+
+    /** Permute every index. */
+    @Benchmark
+    public int permuteInt() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _perm.permute(i);
+        }
+        return sum;
+    }
+
+    /** Invert every index. */
+    @Benchmark
+    public int invertInt() {
+        int sum = 0;
+        for (int i = 0; i < size; i += 1) {
+            sum += _perm.invert(i);
+        }
+        return sum;
+    }
+
+    /** Permute SIZE characters. */
+    @Benchmark
+    public int permuteChar() {
+        int sum = 0;
+        for (char c : _chars) {
+            sum += _perm.permute(c);
+        }
+        return sum;
+    }
+
+    /** Invert SIZE characters. */
+    @Benchmark
+    public int invertChar() {
+        int sum = 0;
+        for (char c : _chars) {
+            sum += _perm.invert(c);
+        }
+        return sum;
+    }
+
+    /** Permutation under test. */
+    private Permutation _perm;
+
+    /** SIZE random characters of the alphabet. */
+    private char[] _chars;
+
+}
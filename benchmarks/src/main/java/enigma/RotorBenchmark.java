@@ -0,0 +1,97 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Rotor.convertForward and convertBackward at every
+ *  setting and every input, and of the notch queries at every setting.
+ *  @author nishuang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotorBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int size;
+
+    /** Kind of alphabet: "range" or "free". */
+    @Param({ "range", "free" })
+    public String kind;
+
+    /** Set up a random rotor with two notches. */
+    @Setup
+    public void setUp() {
+        Fixtures fixtures = new Fixtures(size);
+        Alphabet alphabet = fixtures.alphabet(kind, size);
+        String notches = "" + alphabet.toChar(size / 3)
+            + alphabet.toChar(size - 1);
+        _rotor = new MovingRotor("M", fixtures.permutation(alphabet),
+                                 notches);
+    }
+
+    /** Convert every input forward at every setting. */
+    @Benchmark
+    public int convertForward() {
+        int sum = 0;
+        for (int posn = 0; posn < size; posn += 1) {
+            for (int p = 0; p < size; p += 1) {
+                sum += _rotor.convertForward(p, posn);
+            }
+        }
+        return sum;
+    }
+
+    /** Convert every input backward at every setting. */
+    @Benchmark
+    public int convertBackward() {
+        int sum = 0;
+        for (int posn = 0; posn < size; posn += 1) {
+            for (int e = 0; e < size; e += 1) {
+                sum += _rotor.convertBackward(e, posn);
+            }
+        }
+        return sum;
+    }
+
+    /** Ask whether the rotor is at a notch at every setting. */
+    @Benchmark
+    public int atNotch() {
+        int count = 0;
+        for (int posn = 0; posn < size; posn += 1) {
+            if (_rotor.atNotch(posn)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Find the next notch from every setting. */
+    @Benchmark
+    public int nextNotch() {
+        int sum = 0;
+        for (int posn = 0; posn < size; posn += 1) {
+            sum += _rotor.nextNotch(posn);
+        }
+        return sum;
+    }
+
+    /** Rotor under test. */
+    private Rotor _rotor;
+
+}
@@ -0,0 +1,120 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/** A load generator for Server: opens SESSIONS concurrent sessions, each
+ *  converting one message under its own settings line, and reports the
+ *  distribution of session latencies and the overall throughput.
+ *  Usage:
+ *  <pre>
+ *      java -cp benchmarks/target/benchmarks.jar enigma.ServerLoad \
+ *          SESSIONS LENGTH
+ *  </pre>
+ *  runs an in-process server on a loopback port for a random machine
+ *  with 26 letters and five rotor slots, and sends messages of LENGTH
+ *  letters.
+ *  @author nishuang
+ */
+public class ServerLoad {
+
+    /** Run the load described in the class comment on ARGS. */
+    public static void main(String... args) throws Exception {
+        int sessions = Integer.parseInt(args[0]);
+        int length = Integer.parseInt(args[1]);
+        Fixtures fixtures = new Fixtures(sessions);
+        Alphabet alphabet = fixtures.alphabet("range", 26);
+        Machine made = fixtures.machine(alphabet, 5);
+        String[] inputs = new String[sessions];
+        for (int k = 0; k < sessions; k += 1) {
+            inputs[k] = "* R M1 M2 M3 M4 " + fixtures.message(alphabet, 4)
+                + "\n" + fixtures.message(alphabet, length) + "\n";
+        }
+        try (Server server = new Server(made, Server.open("0"))) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.start();
+            long[] latencies = run(server.address(), inputs);
+            Arrays.sort(latencies);
+            double seconds = _elapsed / 1e9;
+            System.out.printf("%d sessions of %d letters in %.2f s: "
+                              + "%.0f sessions/s, %.0f letters/s%n",
+                              sessions, length, seconds, sessions / seconds,
+                              (double) sessions * length / seconds);
+            System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  "
+                              + "max %.2f%n",
+                              percentile(latencies, 50),
+                              percentile(latencies, 90),
+                              percentile(latencies, 99),
+                              latencies[sessions - 1] / 1e6);
+            server.close();
+            acceptor.join();
+        }
+    }
+
+    /** Send each of INPUTS in its own concurrent session to the server at
+     *  ADDRESS, returning each session's latency in nanoseconds. */
+    private static long[] run(SocketAddress address, String[] inputs)
+        throws InterruptedException {
+        long[] latencies = new long[inputs.length];
+        CountDownLatch ready = new CountDownLatch(inputs.length);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(inputs.length);
+        ExecutorService clients = Server.sessionExecutor();
+        for (int k = 0; k < inputs.length; k += 1) {
+            int session = k;
+            clients.execute(() -> {
+                try {
+                    ready.countDown();
+                    go.await();
+                    long start = System.nanoTime();
+                    session(address, inputs[session]);
+                    latencies[session] = System.nanoTime() - start;
+                } catch (IOException | InterruptedException excp) {
+                    latencies[session] = Long.MAX_VALUE;
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        _elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        return latencies;
+    }
+
+    /** Send INPUT in a session with the server at ADDRESS and read the
+     *  whole response. */
+    private static void session(SocketAddress address, String input)
+        throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(input.getBytes(StandardCharsets.UTF_8));
+            channel.shutdownOutput();
+            InputStream in = Channels.newInputStream(channel);
+            in.transferTo(new ByteArrayOutputStream());
+        }
+    }
+
+    /** Return percentile P of the sorted LATENCIES, in milliseconds. */
+    private static double percentile(long[] latencies, int p) {
+        int k = (int) Math.min(latencies.length - 1,
+                               (long) latencies.length * p / 100);
+        return latencies[k] / 1e6;
+    }
+
+    /** Wall-clock time of the last run, in nanoseconds. */
+    private static long _elapsed;
+
+}
@@ -0,0 +1,237 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack on messages from a machine.  Every rotor
+ *  arrangement (see KeySpace) and starting position is first scored by
+ *  the index of coincidence of its decryption with no plugboard, which
+ *  stays higher at the right settings even with the plugboard unknown.
+ *  Each of the best few positions is then the start of an independent
+ *  hill climb over plugboards, which keeps making single changes of
+ *  plug pairs that improve the n-gram score of the decryption until
+ *  none does.
+ *
+ *  Trial decryptions look up substitutions in a CycleTable and write
+ *  into buffers allocated once per search, and an n-gram scoring pass
+ *  stops as soon as even the best possible score for the remaining
+ *  letters cannot beat the best plugboard so far.
+ *  @author nishuang
+ */
+class Attack {
+
+    /** An attack on CIPHERTEXT (ignoring whitespace), which was produced
+     *  by a machine with the rotors and slots of the unconfigured machine
+     *  MADE, scoring decryptions with NGRAMS. */
+    Attack(Machine made, String ciphertext, NgramTable ngrams) {
+        _alphabet = made.alphabet();
+        if (ngrams.alphabet().size() != _alphabet.size()) {
+            throw error("n-grams are not over the machine's alphabet");
+        }
+        _size = _alphabet.size();
+        _cipher = KeySpace.indices(ciphertext, _alphabet);
+        if (_cipher.length < ngrams.n()) {
+            throw error("ciphertext is too short to score");
+        }
+        _ngrams = ngrams;
+        _keys = new KeySpace(made);
+    }
+
+    /** Return the settings lines of the best decryptions found by
+     *  climbing from the RESTARTS best starting positions, best first.
+     *  Positions are scored, and climbs run, in parallel in POOL. */
+    List<String> search(ForkJoinPool pool, int restarts) {
+        List<Start> starts = pool.submit(
+            () -> IntStream.range(0, _keys.size()).parallel()
+                .mapToObj(unit -> bestStarts(unit, restarts))
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong((Start s) -> -s._score))
+                .limit(restarts)
+                .collect(Collectors.toList())).join();
+        return pool.submit(
+            () -> starts.parallelStream()
+                .map(this::climb)
+                .sorted(Comparator.comparingDouble((Start s) -> -s._climbed))
+                .map(s -> s._line)
+                .collect(Collectors.toList())).join();
+    }
+
+    /** Return the COUNT starting positions of unit UNIT of my key space
+     *  whose decryptions without a plugboard have the highest index of
+     *  coincidence. */
+    private List<Start> bestStarts(int unit, int count) {
+        Machine machine = _keys.machine(unit);
+        CycleTable table = table(machine);
+        long[] best = new long[count];
+        int[] bestState = new int[count];
+        int found = 0;
+        int[] tally = new int[_size];
+        for (int start = 0; start < table.states(); start += 1) {
+            Arrays.fill(tally, 0);
+            int state = start;
+            for (int c : _cipher) {
+                state = table.next(state);
+                tally[table.substitute(state, c)] += 1;
+            }
+            long score = 0;
+            for (int f : tally) {
+                score += (long) f * (f - 1);
+            }
+            if (found < count || score > best[found - 1]) {
+                int k = found < count ? found : found - 1;
+                while (k > 0 && best[k - 1] < score) {
+                    best[k] = best[k - 1];
+                    bestState[k] = bestState[k - 1];
+                    k -= 1;
+                }
+                best[k] = score;
+                bestState[k] = start;
+                found = Math.min(found + 1, count);
+            }
+        }
+        ArrayList<Start> result = new ArrayList<>();
+        for (int k = 0; k < found; k += 1) {
+            result.add(new Start(unit, bestState[k], best[k]));
+        }
+        return result;
+    }
+
+    /** Return the cycle table for MACHINE. */
+    private static CycleTable table(Machine machine) {
+        CycleTable table = CycleTable.of(machine);
+        if (table == null) {
+            throw error("too many rotor positions to search");
+        }
+        return table;
+    }
+
+    /** Climb from START to a plugboard that no single change (joining
+     *  two letters, after separating them from any partners, or
+     *  separating one letter from its partner) improves,
+     *  recording its score and settings line in START, which is
+     *  returned. */
+    private Start climb(Start start) {
+        Machine machine = _keys.machine(start._unit);
+        CycleTable table = table(machine);
+        int[] states = new int[_cipher.length];
+        int state = start._state;
+        for (int i = 0; i < _cipher.length; i += 1) {
+            state = table.next(state);
+            states[i] = state;
+        }
+        int[] plug = new int[_size];
+        for (int x = 0; x < _size; x += 1) {
+            plug[x] = x;
+        }
+        float best = score(table, states, plug, Float.NEGATIVE_INFINITY);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a; b < _size; b += 1) {
+                    int pa = plug[a], pb = plug[b];
+                    if (a == b ? pa == a : pa == b) {
+                        continue;
+                    }
+                    plug[pa] = pa;
+                    plug[pb] = pb;
+                    plug[a] = b;
+                    plug[b] = a;
+                    float score = score(table, states, plug, best);
+                    if (score > best) {
+                        best = score;
+                        improved = true;
+                    } else {
+                        plug[a] = pa;
+                        plug[pa] = a;
+                        plug[b] = pb;
+                        plug[pb] = b;
+                    }
+                }
+            }
+        }
+        table.decode(start._state, machine);
+        start._climbed = best;
+        start._line = KeySpace.settingsLine(machine, plug);
+        return start;
+    }
+
+    /** Return the n-gram score of my ciphertext decrypted through the
+     *  plugboard PLUG and the substitutions of TABLE in STATES, or
+     *  negative infinity as soon as it is clear that the score will not
+     *  exceed FLOOR. */
+    private float score(CycleTable table, int[] states, int[] plug,
+                        float floor) {
+        int n = _ngrams.n();
+        float max = _ngrams.maxScore();
+        float result = 0;
+        int index = 0;
+        for (int i = 0; i < _cipher.length; i += 1) {
+            int p = plug[table.substitute(states[i], plug[_cipher[i]])];
+            index = _ngrams.next(index, p);
+            if (i >= n - 1) {
+                result += _ngrams.score(index);
+            }
+            if ((i & CHECK_INTERVAL) == CHECK_INTERVAL
+                && result + max * (_cipher.length - 1 - i) <= floor) {
+                return Float.NEGATIVE_INFINITY;
+            }
+        }
+        return result;
+    }
+
+    /** A starting position of one unit of the key space, with its index
+     *  of coincidence and, once climbed, its best plugboard. */
+    private static class Start {
+
+        /** Starting state STATE of unit UNIT, scoring SCORE. */
+        Start(int unit, int state, long score) {
+            _unit = unit;
+            _state = state;
+            _score = score;
+        }
+
+        /** Unit of the key space. */
+        private final int _unit;
+
+        /** State of the unit's cycle table before the first letter. */
+        private final int _state;
+
+        /** Index of coincidence, times the square of the text length. */
+        private final long _score;
+
+        /** N-gram score of the best plugboard climbed to. */
+        private float _climbed;
+
+        /** Settings line for the best plugboard climbed to. */
+        private String _line;
+
+    }
+
+    /** A partial n-gram score is checked against the floor after every
+     *  letter I with I & CHECK_INTERVAL == CHECK_INTERVAL. */
+    private static final int CHECK_INTERVAL = 15;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** The ciphertext, as indices. */
+    private final int[] _cipher;
+
+    /** Scores of decryptions. */
+    private final NgramTable _ngrams;
+
+    /** Rotor arrangements tried. */
+    private final KeySpace _keys;
+
+}
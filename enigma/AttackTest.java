@@ -0,0 +1,91 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/** The suite of all JUnit tests for the Attack and NgramTable classes.
+ *  @Shuang
+ */
+public class AttackTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /** Plaintext for the attack, which also supplies its n-grams. */
+    private static final String TEXT =
+        "BYTHEAPPLICATIONOFTHESEMETHODSTHECODEBREAKERSWEREABLETOREAD"
+        + "ALARGEPARTOFTHEMESSAGESSENTEACHDAYTHEWORKWASDONEBYHANDATFIRST"
+        + "ANDLATERWITHTHEHELPOFMACHINESWHICHTESTEDMANYPOSSIBLESETTINGS"
+        + "ATONCEANDSTOPPEDWHENEVERTHEYFOUNDONETHATWASCONSISTENTWITHTHE"
+        + "GUESSEDPLAINTEXTTHEOPERATORSTHENCHECKEDEACHSTOPBYHANDAND"
+        + "WHENTHEYFOUNDTHECORRECTSETTINGSTHEWHOLEDAYSTRAFFICCOULDBE"
+        + "READWITHINAFEWHOURSOFITSINTERCEPTION";
+
+    @Test
+    public void checkngrams() {
+        Alphabet upper = new CharacterRange('A', 'Z');
+        NgramTable table = NgramTable.count("THE THE TH", 3, upper);
+        assertEquals(3, table.n());
+        assertEquals(26 * 26 * 26, table.entries());
+        int the = (19 * 26 + 7) * 26 + 4;
+        assertEquals(Math.log10(2.0 / 6), table.score(the), 1e-6);
+        assertEquals(table.maxScore(), table.score(the), 0);
+    }
+
+    @Test
+    public void checklargealphabet() {
+        Alphabet wide = new CharacterRange('\u4e00', '\u4eff');
+        NgramTable table = NgramTable.count("\u4eff\u4eff\u4eff\u4e01",
+                                            3, wide);
+        assertEquals(1 << 24, table.entries());
+        int last = (1 << 24) - 1;
+        assertEquals(last, table.next(table.next(table.next(0, 255), 255),
+                                      255));
+        assertEquals(last - 254, table.next(last, 1));
+        assertEquals(Math.log10(0.5), table.score(last), 1e-6);
+        assertEquals(Math.log10(0.5), table.score(last - 254), 1e-6);
+    }
+
+    @Test
+    public void checkrecoverssettings() {
+        Alphabet upper = new CharacterRange('A', 'Z');
+        Collection<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(
+            "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) (SZ) "
+            + "(TV)", upper)));
+        rotors.add(new MovingRotor("I", new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", upper), "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(
+            "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", upper), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+            "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", upper), "J"));
+        Machine made = new Machine(upper, 4, 3, rotors);
+        Machine sender = new Machine(made);
+        sender.insertRotors(new String[] { "B", "IV", "I", "III" });
+        sender.setRotors("QRS");
+        sender.setPlugboard(new Permutation("(AT) (EK)", upper));
+        String cipher = sender.convert(TEXT);
+        Attack attack = new Attack(made, cipher,
+                                   NgramTable.count(TEXT, 3, upper));
+        List<String> found = attack.search(new ForkJoinPool(2), 8);
+        String[] words = found.get(0).split(" ", 7);
+        Machine receiver = new Machine(made);
+        receiver.insertRotors(new String[] {
+            words[1], words[2], words[3], words[4] });
+        receiver.setRotors(words[5]);
+        if (words.length > 6) {
+            receiver.setPlugboard(new Permutation(words[6], upper));
+        }
+        assertEquals(TEXT, receiver.convert(cipher));
+    }
+
+}
@@ -0,0 +1,90 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Converts binary files with a machine whose alphabet has
+ *  ByteAlphabet.SIZE characters, byte B standing for character number
+ *  B & 0xFF.  Files are mapped into memory a region at a time and
+ *  converted through one fixed-size buffer, so heap use does not grow
+ *  with the size of the file.
+ *  @author nishuang
+ */
+class BinaryFiles {
+
+    /** Not instantiable. */
+    private BinaryFiles() {
+    }
+
+    /** Convert the file named INPUT with M into the file named OUTPUT,
+     *  which is created or truncated to the size of INPUT, or convert
+     *  INPUT in place if OUTPUT is null or names the same file (through
+     *  a symbolic or hard link, say).
+     *  Returns the number of bytes converted. */
+    static long convert(Machine M, String input, String output) {
+        if (M.alphabet().size() != ByteAlphabet.SIZE) {
+            throw error("binary conversion needs an alphabet of %d "
+                        + "characters", ByteAlphabet.SIZE);
+        }
+        Path source = Path.of(input).toAbsolutePath().normalize();
+        Path target = output == null ? source
+            : Path.of(output).toAbsolutePath().normalize();
+        try {
+            if (target.equals(source)
+                || Files.exists(target) && Files.isSameFile(source, target)) {
+                try (FileChannel file = FileChannel.open(
+                         source, StandardOpenOption.READ,
+                         StandardOpenOption.WRITE)) {
+                    return convert(M, file, file);
+                }
+            }
+            try (FileChannel in = FileChannel.open(source,
+                                                   StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(
+                     target, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                return convert(M, in, out);
+            }
+        } catch (IOException excp) {
+            throw error("could not convert %s: %s", input, excp.getMessage());
+        }
+    }
+
+    /** Convert the contents of IN with M into OUT, which may be the same
+     *  channel, returning the number of bytes converted. */
+    private static long convert(Machine M, FileChannel in, FileChannel out)
+        throws IOException {
+        long size = in.size();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (long start = 0; start < size; start += REGION_SIZE) {
+            long length = Math.min(REGION_SIZE, size - start);
+            MappedByteBuffer source =
+                in.map(in == out ? FileChannel.MapMode.READ_WRITE
+                       : FileChannel.MapMode.READ_ONLY, start, length);
+            MappedByteBuffer target = in == out ? source
+                : out.map(FileChannel.MapMode.READ_WRITE, start, length);
+            for (int k = 0; k < length; k += buffer.length) {
+                int n = (int) Math.min(buffer.length, length - k);
+                source.get(k, buffer, 0, n);
+                M.convert(buffer, 0, n);
+                target.put(k, buffer, 0, n);
+            }
+            target.force();
+        }
+        return size;
+    }
+
+    /** Number of bytes of a file mapped at once. */
+    static final int REGION_SIZE = 1 << 28;
+
+    /** Number of bytes converted at a time within a region. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+}
@@ -0,0 +1,155 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** The suite of all JUnit tests for the BinaryFiles class.
+ *  @Shuang
+ */
+public class BinaryFilesTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return a random permutation of the byte alphabet, with no fixed
+     *  points and each value its own inverse if INVOLUTION. */
+    private static Permutation randomPermutation(Random random,
+                                                 boolean involution) {
+        int[] order = new int[ByteAlphabet.SIZE];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        int[] forward = new int[order.length];
+        for (int i = 0; i < order.length; i += 1) {
+            if (involution) {
+                forward[order[i]] = order[i ^ 1];
+            } else {
+                forward[i] = order[i];
+            }
+        }
+        return new Permutation(forward, new ByteAlphabet());
+    }
+
+    /** Return a machine over the byte alphabet with a reflector and three
+     *  moving rotors, set to AAA. */
+    private static Machine machine() {
+        Random random = new Random(19);
+        Collection<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", randomPermutation(random, true)));
+        rotors.add(new MovingRotor("A", randomPermutation(random, false),
+                                   "Q"));
+        rotors.add(new MovingRotor("B", randomPermutation(random, false),
+                                   "E"));
+        rotors.add(new MovingRotor("C", randomPermutation(random, false),
+                                   "V\u00ff"));
+        Machine M = new Machine(new ByteAlphabet(), 4, 3, rotors);
+        M.insertRotors(new String[] {"R", "A", "B", "C"});
+        M.setRotors("AAA");
+        return M;
+    }
+
+    @Test
+    public void checkRoundTrip() throws IOException {
+        File plain = File.createTempFile("enigma", ".bin");
+        File cipher = File.createTempFile("enigma", ".bin");
+        plain.deleteOnExit();
+        cipher.deleteOnExit();
+        byte[] data = new byte[200_000];
+        new Random(7).nextBytes(data);
+        Files.write(plain.toPath(), data);
+
+        assertEquals(data.length, BinaryFiles.convert(
+            machine(), plain.getPath(), cipher.getPath()));
+        byte[] encrypted = Files.readAllBytes(cipher.toPath());
+        assertEquals(data.length, encrypted.length);
+        assertFalse(Arrays.equals(data, encrypted));
+
+        byte[] expected = data.clone();
+        machine().convert(expected, 0, expected.length);
+        assertArrayEquals(expected, encrypted);
+
+        BinaryFiles.convert(machine(), cipher.getPath(), null);
+        assertArrayEquals(data, Files.readAllBytes(cipher.toPath()));
+    }
+
+    @Test
+    public void checkLinkToInput() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path plain = dir.resolve("plain.bin");
+        Path link = dir.resolve("link.bin");
+        try {
+            byte[] data = new byte[100_000];
+            new Random(11).nextBytes(data);
+            Files.write(plain, data);
+            Files.createSymbolicLink(link, plain);
+            assertEquals(data.length, BinaryFiles.convert(
+                machine(), plain.toString(), link.toString()));
+            byte[] expected = data.clone();
+            machine().convert(expected, 0, expected.length);
+            assertArrayEquals(expected, Files.readAllBytes(plain));
+        } finally {
+            Files.deleteIfExists(link);
+            Files.deleteIfExists(plain);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void checkConfiguredAlphabet() throws IOException {
+        StringBuilder config = new StringBuilder("\u4e00-\u4eff\n3 2\n B R");
+        for (char c = '\u4e00'; c <= '\u4eff'; c += 2) {
+            config.append(" (").append(c).append((char) (c + 1)).append(')');
+        }
+        config.append("\n I M\u4e01 (\u4e00\u4e31\u4ef0\u4e23)")
+            .append("\n II M\u4e00 (\u4eff\u4e00) (\u4e50\u4e51\u4e52)\n");
+        Machine M = new ConfigReader(new StringReader(config.toString()),
+                                     "test").read();
+        M.insertRotors(new String[] {"B", "I", "II"});
+        M.setRotors("\u4e00\u4e00");
+        File plain = File.createTempFile("enigma", ".bin");
+        File cipher = File.createTempFile("enigma", ".bin");
+        plain.deleteOnExit();
+        cipher.deleteOnExit();
+        byte[] data = new byte[50_000];
+        new Random(23).nextBytes(data);
+        Files.write(plain.toPath(), data);
+        BinaryFiles.convert(new Machine(M), plain.getPath(),
+                            cipher.getPath());
+        assertFalse(Arrays.equals(data,
+                                  Files.readAllBytes(cipher.toPath())));
+        BinaryFiles.convert(new Machine(M), cipher.getPath(), null);
+        assertArrayEquals(data, Files.readAllBytes(cipher.toPath()));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNeedsByteAlphabet() throws IOException {
+        File plain = File.createTempFile("enigma", ".bin");
+        plain.deleteOnExit();
+        Machine M = new Machine(new CharacterRange('A', 'Z'), 2, 1,
+                                new ArrayList<>());
+        BinaryFiles.convert(M, plain.getPath(), null);
+    }
+
+}
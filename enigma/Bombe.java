@@ -0,0 +1,283 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext search in the manner of the Turing-Welchman Bombe.
+ *  Given a ciphertext and a crib (plaintext believed to lie at a known
+ *  offset in it), a Bombe tries every order of the rotors available to
+ *  a machine and every starting position of those rotors, and reports
+ *  as stops the ones for which some plugboard is consistent with the
+ *  crib.
+ *
+ *  The crib and ciphertext form a menu: a graph on the letters of the
+ *  alphabet with an edge between crib letter A and cipher letter C at
+ *  each crib position I.  Since the plugboard P and the rotor
+ *  substitution S_I at position I are involutions, P(C) = S_I(P(A)), so
+ *  a hypothesis P(A) = B implies P(C) = S_I(B), and (the diagonal board)
+ *  P(B) = A.  Each position is tested by following these implications
+ *  from one hypothesis about the most connected menu letter; if they
+ *  do not imply every value for that letter, each value they leave out
+ *  is a candidate, which survives if its own implications never give
+ *  any letter two values.  The substitutions are looked up in a
+ *  CycleTable, and the implications are kept in a bit matrix.
+ *  @author nishuang
+ */
+class Bombe {
+
+    /** A Bombe for the rotors and machine configuration of the
+     *  unconfigured machine MADE, which must have the identity as its
+     *  plugboard, searching for CRIB at OFFSET in CIPHERTEXT.  Whitespace
+     *  in CIPHERTEXT and CRIB is ignored. */
+    Bombe(Machine made, String ciphertext, String crib, int offset) {
+        _made = made;
+        _alphabet = made.alphabet();
+        _size = _alphabet.size();
+        int[] cipher = KeySpace.indices(ciphertext, _alphabet),
+            plain = KeySpace.indices(crib, _alphabet);
+        if (plain.length == 0) {
+            throw error("empty crib");
+        }
+        if (offset < 0 || offset + plain.length > cipher.length) {
+            throw error("crib at %d does not fit in the ciphertext", offset);
+        }
+        _offset = offset;
+        _length = plain.length;
+        int[] degree = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            int a = plain[i], c = cipher[offset + i];
+            if (a == c) {
+                throw error("crib letter %d encrypts to itself", i);
+            }
+            degree[a] += 1;
+            degree[c] += 1;
+        }
+        _edgeStart = new int[_size + 1];
+        for (int a = 0; a < _size; a += 1) {
+            _edgeStart[a + 1] = _edgeStart[a] + degree[a];
+        }
+        _edgeLetter = new int[2 * _length];
+        _edgePosition = new int[2 * _length];
+        int[] fill = Arrays.copyOf(_edgeStart, _size);
+        for (int i = 0; i < _length; i += 1) {
+            int a = plain[i], c = cipher[offset + i];
+            _edgeLetter[fill[a]] = c;
+            _edgePosition[fill[a]] = i;
+            fill[a] += 1;
+            _edgeLetter[fill[c]] = a;
+            _edgePosition[fill[c]] = i;
+            fill[c] += 1;
+        }
+        int test = 0;
+        for (int a = 1; a < _size; a += 1) {
+            if (degree[a] > degree[test]) {
+                test = a;
+            }
+        }
+        _test = test;
+        _keys = new KeySpace(made);
+    }
+
+    /** Return the number of rotor orders I try. */
+    int numOrders() {
+        return _keys.numOrders();
+    }
+
+    /** Return the stops for every rotor order and starting position,
+     *  searching the orders (and settings of their stationary rotors) in
+     *  parallel in POOL.  Each stop is a settings line for the starting
+     *  position, with the plugboard pairs implied by the crib. */
+    List<String> search(ForkJoinPool pool) {
+        return pool.submit(() -> IntStream.range(0, _keys.size()).parallel()
+                           .mapToObj(this::searchUnit)
+                           .flatMap(List::stream)
+                           .collect(Collectors.toList())).join();
+    }
+
+    /** Return the stops of unit UNIT of my key space. */
+    private List<String> searchUnit(int unit) {
+        Machine machine = _keys.machine(unit);
+        CycleTable table = CycleTable.of(machine);
+        if (table == null) {
+            throw error("too many rotor positions for the bombe");
+        }
+        Search search = new Search(table);
+        ArrayList<String> result = new ArrayList<>();
+        for (int start = 0; start < table.states(); start += 1) {
+            search.test(start, machine, result);
+        }
+        return result;
+    }
+
+    /** The working storage of a search through the positions described
+     *  by one cycle table. */
+    private class Search {
+
+        /** A search through the states of TABLE. */
+        Search(CycleTable table) {
+            _table = table;
+            _states = new int[_length];
+            _live = new long[(_size * _size + 63) / 64];
+            _lit = new long[_live.length];
+            _rowCount = new int[_size];
+            _stack = new int[_size * _size];
+        }
+
+        /** Add to RESULT the stops found when MACHINE starts in state
+         *  START of my table. */
+        void test(int start, Machine machine, List<String> result) {
+            int state = start;
+            for (int k = 0; k <= _offset; k += 1) {
+                state = _table.next(state);
+            }
+            for (int i = 0; i < _length; i += 1) {
+                _states[i] = state;
+                state = _table.next(state);
+            }
+            if (propagate(_test, 0, true)) {
+                return;
+            }
+            if (_rowCount[_test] == 1 && consistent()) {
+                result.add(stop(start, machine));
+            }
+            System.arraycopy(_live, 0, _lit, 0, _live.length);
+            for (int y = 1; y < _size; y += 1) {
+                int bit = _test * _size + y;
+                if ((_lit[bit >>> 6] & (1L << bit)) == 0
+                    && !propagate(_test, y, false)) {
+                    result.add(stop(start, machine));
+                }
+            }
+        }
+
+        /** Set _live to the implications of the hypothesis that the
+         *  plugboard takes A to B.  Returns true if it stops early: when
+         *  FULL and every value of _test is implied, or when not FULL and
+         *  some letter is given two values. */
+        private boolean propagate(int a, int b, boolean full) {
+            Arrays.fill(_live, 0);
+            Arrays.fill(_rowCount, 0);
+            _top = 0;
+            if (imply(a, b, full)) {
+                return true;
+            }
+            while (_top > 0) {
+                _top -= 1;
+                int pair = _stack[_top];
+                int x = pair / _size, v = pair % _size;
+                for (int e = _edgeStart[x]; e < _edgeStart[x + 1]; e += 1) {
+                    int w = _table.substitute(_states[_edgePosition[e]], v);
+                    if (imply(_edgeLetter[e], w, full)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /** Record that the plugboard takes X to V and (by the diagonal
+         *  board) V to X, returning true if propagate should stop early
+         *  as described there for FULL. */
+        private boolean imply(int x, int v, boolean full) {
+            return mark(x, v, full) || mark(v, x, full);
+        }
+
+        /** Record that the plugboard takes X to V, as for imply. */
+        private boolean mark(int x, int v, boolean full) {
+            int bit = x * _size + v;
+            long mask = 1L << bit;
+            if ((_live[bit >>> 6] & mask) != 0) {
+                return false;
+            }
+            _live[bit >>> 6] |= mask;
+            _rowCount[x] += 1;
+            _stack[_top] = bit;
+            _top += 1;
+            return full ? _rowCount[_test] == _size : _rowCount[x] > 1;
+        }
+
+        /** Return true iff _live gives no letter two values. */
+        private boolean consistent() {
+            for (int count : _rowCount) {
+                if (count > 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Return the settings line for MACHINE starting in state START,
+         *  with the plugboard pairs in _live. */
+        private String stop(int start, Machine machine) {
+            _table.decode(start, machine);
+            int[] plugboard = new int[_size];
+            for (int x = 0; x < _size; x += 1) {
+                plugboard[x] = x;
+                for (int v = 0; v < _size; v += 1) {
+                    int bit = x * _size + v;
+                    if ((_live[bit >>> 6] & (1L << bit)) != 0) {
+                        plugboard[x] = v;
+                    }
+                }
+            }
+            return KeySpace.settingsLine(machine, plugboard);
+        }
+
+        /** Table of the substitutions in each state. */
+        private final CycleTable _table;
+
+        /** The state at each crib position. */
+        private final int[] _states;
+
+        /** Bit X * _size + V is set if the plugboard is implied to take
+         *  letter X to V. */
+        private final long[] _live;
+
+        /** The contents of _live implied by the first hypothesis tested
+         *  at a position. */
+        private final long[] _lit;
+
+        /** Number of bits set in each row of _live. */
+        private final int[] _rowCount;
+
+        /** Implications not yet followed, as bit numbers in _live. */
+        private final int[] _stack;
+
+        /** Number of entries in _stack. */
+        private int _top;
+
+    }
+
+    /** Unconfigured machine supplying rotors and slots. */
+    private final Machine _made;
+
+    /** Alphabet of _made. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Position of the crib in the ciphertext. */
+    private final int _offset;
+
+    /** Number of letters in the crib. */
+    private final int _length;
+
+    /** The menu edges at letter A are at indices _edgeStart[A] up to
+     *  _edgeStart[A + 1] of _edgeLetter (the letter at the other end) and
+     *  _edgePosition (the crib position). */
+    private final int[] _edgeStart, _edgeLetter, _edgePosition;
+
+    /** The most connected menu letter, whose values are tested. */
+    private final int _test;
+
+    /** Rotor arrangements tried. */
+    private final KeySpace _keys;
+
+}
@@ -0,0 +1,72 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @Shuang
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Return an unconfigured machine with reflector B and moving rotors
+     *  I, III and IV in four slots. */
+    private Machine machine() {
+        Alphabet upper = new CharacterRange('A', 'Z');
+        Collection<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(
+            "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) (SZ) "
+            + "(TV)", upper)));
+        rotors.add(new MovingRotor("I", new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", upper), "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(
+            "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", upper), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+            "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", upper), "J"));
+        return new Machine(upper, 4, 3, rotors);
+    }
+
+    @Test
+    public void checkfindsstop() {
+        Machine made = machine();
+        Machine sender = new Machine(made);
+        sender.insertRotors(new String[] { "B", "IV", "I", "III" });
+        sender.setRotors("QRS");
+        sender.setPlugboard(new Permutation("(AT) (EK) (HQ) (RX)",
+                                            sender.alphabet()));
+        String plain = "WETTERVORHERSAGEBISKAYAXHEUTEREGENANDERKUESTE";
+        String cipher = sender.convert(plain);
+        Bombe bombe = new Bombe(made, cipher, plain.substring(5, 30), 5);
+        assertEquals(6, bombe.numOrders());
+        List<String> stops = bombe.search(new ForkJoinPool(2));
+        boolean found = false;
+        for (String stop : stops) {
+            if (stop.startsWith("* B IV I III QRS ")) {
+                found = true;
+                Machine receiver = new Machine(made);
+                receiver.insertRotors(new String[] { "B", "IV", "I", "III" });
+                receiver.setRotors("QRS");
+                int paren = stop.indexOf('(');
+                receiver.setPlugboard(new Permutation(
+                    stop.substring(paren), receiver.alphabet()));
+                String decoded = receiver.convert(cipher);
+                assertEquals(plain.substring(5, 30), decoded.substring(5, 30));
+            }
+        }
+        assertTrue(found);
+        assertTrue(stops.size() < 100);
+    }
+
+}
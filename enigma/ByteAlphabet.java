@@ -0,0 +1,47 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The Alphabet of the 256 byte values, for converting binary data.
+ *  Byte B is index B & 0xFF, and stands for the character with that
+ *  code (ISO 8859-1), so no table is needed in either direction and
+ *  bytes index a machine's conversion tables directly.
+ *  @author nishuang
+ */
+class ByteAlphabet extends Alphabet {
+
+    /** Number of characters in a ByteAlphabet. */
+    static final int SIZE = 256;
+
+    @Override
+    int size() {
+        return SIZE;
+    }
+
+    @Override
+    boolean contains(char ch) {
+        return ch < SIZE;
+    }
+
+    @Override
+    char toChar(int index) {
+        if (index < 0 || index >= SIZE) {
+            throw error("character index out of range");
+        }
+        return (char) index;
+    }
+
+    @Override
+    int toInt(char ch) {
+        if (ch >= SIZE) {
+            throw error("character out of range");
+        }
+        return ch;
+    }
+
+    /** Return the index of byte B. */
+    static int toInt(byte b) {
+        return b & 0xFF;
+    }
+
+}
@@ -18,6 +18,16 @@ class CharacterRange extends Alphabet {
         }
     }
 
+    /** Return the first character in this Alphabet. */
+    char first() {
+        return _first;
+    }
+
+    /** Return the last character in this Alphabet. */
+    char last() {
+        return _last;
+    }
+
     @Override
     int size() {
         return _last - _first + 1;
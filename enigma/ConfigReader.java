@@ -0,0 +1,323 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** Reads a machine configuration in one pass over its characters, in
+ *  time linear in its length.  A configuration is
+ *  <pre>
+ *      ALPHABET
+ *      SLOTS PAWLS
+ *      NAME TYPE CYCLES ...
+ *  </pre>
+ *  where ALPHABET is a range such as A-Z or else the characters of the
+ *  alphabet in order, alone on the first line; SLOTS and PAWLS are
+ *  decimal numbers; and each rotor is described by a NAME, a TYPE (M
+ *  followed by the rotor's notches, N, or R) and the cycles "(cc...)"
+ *  of its permutation, which may continue onto following lines.  A
+ *  rotor ends where a word that does not start with "(" begins the
+ *  next one.  Each permutation is built directly as a table of indices
+ *  as its cycles are read.  Errors are reported as
+ *  "NAME:LINE:COLUMN: MESSAGE", where NAME names the configuration.
+ *  @author nishuang
+ */
+class ConfigReader {
+
+    /** A reader of the configuration on INPUT, called NAME in error
+     *  messages. */
+    ConfigReader(Reader input, String name) {
+        _input = input;
+        _name = name;
+        _buffer = new char[BUFFER_SIZE];
+        _line = 1;
+        _column = 1;
+    }
+
+    /** Return the unconfigured machine described by my input. */
+    Machine read() {
+        try {
+            Alphabet alphabet = readAlphabet();
+            int slots = readCount("number of rotor slots");
+            int pawls = readCount("number of pawls");
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            _size = alphabet.size();
+            _seen = new int[_size];
+            while (skipWhitespace() != -1) {
+                rotors.add(readRotor(alphabet, rotors.size() + 1));
+            }
+            return new Machine(alphabet, slots, pawls, rotors);
+        } catch (IOException excp) {
+            throw error("%s: could not read configuration", _name);
+        }
+    }
+
+    /** Return the alphabet described by the first line of my input. */
+    private Alphabet readAlphabet() throws IOException {
+        skipBlanks();
+        int line = _line, column = _column;
+        StringBuilder chars = new StringBuilder();
+        int end = 0;
+        for (int c = peek(); c != -1 && c != '\n' && c != '\r'; c = peek()) {
+            chars.append((char) next());
+            if (!isBlank(c)) {
+                end = chars.length();
+            }
+        }
+        chars.setLength(end);
+        if (chars.length() == 0) {
+            throw errorAt(line, column, "missing alphabet");
+        }
+        int dash = chars.indexOf("-");
+        if (dash != -1 && (dash != 1 || chars.length() != 3)) {
+            throw errorAt(line, column,
+                          "expected a range such as A-Z, not %s", chars);
+        }
+        try {
+            if (dash == -1) {
+                return new FreeCharacter(chars.toString());
+            }
+            return new CharacterRange(chars.charAt(0), chars.charAt(2));
+        } catch (EnigmaException excp) {
+            throw errorAt(line, column, "%s", excp.getMessage());
+        }
+    }
+
+    /** Return the next word of my input as a non-negative count,
+     *  described as WHAT in error messages. */
+    private int readCount(String what) throws IOException {
+        if (skipWhitespace() == -1) {
+            throw errorAt(_line, _column, "missing %s", what);
+        }
+        int line = _line, column = _column;
+        long result = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            result = result * 10 + (next() - '0');
+            if (result > Integer.MAX_VALUE) {
+                throw errorAt(line, column, "%s is too large", what);
+            }
+        }
+        if (column == _column || !endsWord(c)) {
+            throw errorAt(line, column, "expected %s", what);
+        }
+        return (int) result;
+    }
+
+    /** Return the rotor described at the current position of my input,
+     *  which is the Nth rotor, over ALPHABET. */
+    private Rotor readRotor(Alphabet alphabet, int n) throws IOException {
+        int line = _line, column = _column;
+        if (peek() == '(') {
+            throw errorAt(line, column, "expected a rotor name");
+        }
+        String name = readWord().toUpperCase();
+        if (skipWhitespace() == -1 || peek() == '(') {
+            throw errorAt(_line, _column, "missing type of rotor %s", name);
+        }
+        int typeLine = _line, typeColumn = _column;
+        String type = readWord().toUpperCase();
+        int[] forward = new int[_size];
+        for (int i = 0; i < _size; i += 1) {
+            forward[i] = i;
+        }
+        while (skipWhitespace() == '(') {
+            readCycle(alphabet, forward, n, name);
+        }
+        Permutation perm = new Permutation(forward, alphabet);
+        switch (type.charAt(0)) {
+        case 'M':
+            String notches = type.substring(1);
+            for (int k = 0; k < notches.length(); k += 1) {
+                if (!alphabet.contains(notches.charAt(k))) {
+                    throw errorAt(typeLine, typeColumn + 1 + k,
+                                  "notch '%c' not in alphabet",
+                                  notches.charAt(k));
+                }
+            }
+            return new MovingRotor(name, perm, notches);
+        case 'N':
+            return new FixedRotor(name, perm);
+        case 'R':
+            if (!perm.derangement()) {
+                throw errorAt(line, column, "reflector %s has a fixed point",
+                              name);
+            }
+            return new Reflector(name, perm);
+        default:
+            throw errorAt(typeLine, typeColumn, "unknown type %s of rotor %s",
+                          type, name);
+        }
+    }
+
+    /** Read the cycle starting at the current position of my input into
+     *  FORWARD, the table of the permutation of the Nth rotor, named
+     *  NAME, over ALPHABET. */
+    private void readCycle(Alphabet alphabet, int[] forward, int n,
+                           String name) throws IOException {
+        int line = _line, column = _column;
+        next();
+        int first = -1, prev = -1;
+        while (true) {
+            int c = peek();
+            if (c == -1 || c == '\n' || c == '\r' || c == '(') {
+                throw errorAt(line, column, "unterminated cycle in rotor %s",
+                              name);
+            }
+            if (c == ')') {
+                next();
+                break;
+            }
+            if (isBlank(c)) {
+                next();
+                continue;
+            }
+            int charColumn = _column;
+            char ch = (char) next();
+            if (!alphabet.contains(ch)) {
+                ch = Character.toUpperCase(ch);
+                if (!alphabet.contains(ch)) {
+                    throw errorAt(_line, charColumn,
+                                  "character '%c' not in alphabet", c);
+                }
+            }
+            int k = alphabet.toInt(ch);
+            if (_seen[k] == n) {
+                throw errorAt(_line, charColumn,
+                              "character '%c' appears twice in rotor %s",
+                              ch, name);
+            }
+            _seen[k] = n;
+            if (first == -1) {
+                first = k;
+            } else {
+                forward[prev] = k;
+            }
+            prev = k;
+        }
+        if (first != -1) {
+            forward[prev] = first;
+        }
+        if (!endsWord(peek()) && peek() != '(') {
+            throw errorAt(_line, _column, "expected a cycle in rotor %s",
+                          name);
+        }
+    }
+
+    /** Return the word starting at the current position of my input,
+     *  which ends before whitespace, "(", or the end of input. */
+    private String readWord() throws IOException {
+        StringBuilder result = new StringBuilder();
+        int c;
+        while (!endsWord(c = peek()) && c != '(') {
+            result.append((char) next());
+        }
+        return result.toString();
+    }
+
+    /** Skip whitespace in my input, returning the next character, or -1
+     *  at the end of input. */
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && Character.isWhitespace(c)) {
+            next();
+        }
+        return c;
+    }
+
+    /** Skip whitespace other than line ends in my input. */
+    private void skipBlanks() throws IOException {
+        while (isBlank(peek())) {
+            next();
+        }
+    }
+
+    /** Return true iff C is whitespace other than a line end. */
+    private static boolean isBlank(int c) {
+        return c != '\n' && c != '\r' && c != -1 && Character.isWhitespace(c);
+    }
+
+    /** Return true iff C (-1 at the end of input) ends a word. */
+    private static boolean endsWord(int c) {
+        return c == -1 || Character.isWhitespace(c);
+    }
+
+    /** Return the next character of my input without consuming it, or -1
+     *  at the end of input. */
+    private int peek() throws IOException {
+        if (_pos == _end) {
+            if (_end == -1) {
+                return -1;
+            }
+            _end = _input.read(_buffer, 0, _buffer.length);
+            _pos = 0;
+            if (_end <= 0) {
+                _pos = _end = -1;
+                return -1;
+            }
+        }
+        return _buffer[_pos];
+    }
+
+    /** Consume and return the next character of my input, or -1 at the
+     *  end of input, keeping track of its line and column.  A line ends
+     *  at "\n", "\r", or "\r\n". */
+    private int next() throws IOException {
+        int c = peek();
+        if (c == -1) {
+            return c;
+        }
+        _pos += 1;
+        if (c == '\n' && _lastReturn) {
+            _lastReturn = false;
+        } else if (c == '\n' || c == '\r') {
+            _line += 1;
+            _column = 1;
+            _lastReturn = c == '\r';
+        } else {
+            _column += 1;
+            _lastReturn = false;
+        }
+        return c;
+    }
+
+    /** Return an exception reporting MSG, formatted with ARGS, at line
+     *  LINE, column COLUMN of my input. */
+    private EnigmaException errorAt(int line, int column, String msg,
+                                  Object... args) {
+        return error("%s:%d:%d: %s", _name, line, column,
+                                     String.format(msg, args));
+    }
+
+    /** Characters read from _input at a time. */
+    static final int BUFFER_SIZE = 1 << 13;
+
+    /** Source of the configuration. */
+    private final Reader _input;
+
+    /** Name of the configuration in error messages. */
+    private final String _name;
+
+    /** Characters read from _input; those at _pos up to _end are not
+     *  yet consumed, and both are -1 at the end of input. */
+    private final char[] _buffer;
+
+    /** Bounds of the unconsumed characters in _buffer. */
+    private int _pos, _end;
+
+    /** Line and column of the next character of input. */
+    private int _line, _column;
+
+    /** True iff the last character consumed was "\r". */
+    private boolean _lastReturn;
+
+    /** Size of the alphabet. */
+    private int _size;
+
+    /** _seen[K] is N iff character K has appeared in the cycles of the
+     *  Nth rotor read, so that no table is cleared between rotors. */
+    private int[] _seen;
+
+}
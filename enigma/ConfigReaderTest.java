@@ -0,0 +1,81 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** The suite of all JUnit tests for the ConfigReader class.
+ *  @Shuang
+ */
+public class ConfigReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return the machine described by the configuration CONFIG. */
+    private Machine read(String config) {
+        return new ConfigReader(new StringReader(config), "test").read();
+    }
+
+    /** Check that reading CONFIG fails with a message starting with
+     *  PREFIX. */
+    private void checkError(String config, String prefix) {
+        try {
+            read(config);
+            fail("no error for " + prefix);
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().startsWith(prefix));
+        }
+    }
+
+    @Test
+    public void checkMultiLineReflector() {
+        Machine made = read("A-D\r\n 2 1\r\n"
+                            + " B R (AB)\r\n     (CD)\r\n"
+                            + " I MC (ABC)\n");
+        assertEquals(2, made.allRotors().size());
+        Rotor b = made.allRotors().iterator().next();
+        assertTrue(b.reflecting());
+        assertEquals(3, b.convertForward(2, 0));
+        assertEquals('C', b.alphabet().toChar(b.convertForward(3, 0)));
+    }
+
+    @Test
+    public void checkLargeCatalog() {
+        StringBuilder config = new StringBuilder("A-Z\n12 10\n B R ");
+        for (char c = 'A'; c <= 'Z'; c += 2) {
+            config.append('(').append(c).append((char) (c + 1)).append(')');
+        }
+        int count = 50000;
+        for (int k = 0; k < count; k += 1) {
+            config.append("\n R").append(k).append(" MA (ABC) (XY)");
+        }
+        Machine made = read(config.toString());
+        assertEquals(12, made.numRotors());
+        assertEquals(10, made.numPawls());
+        assertEquals(count + 1, made.allRotors().size());
+    }
+
+    @Test
+    public void checkErrorPositions() {
+        checkError("A-Z\n5\n", "test:3:1: missing number of pawls");
+        checkError("A-Z\n5 x3\n", "test:2:3: expected number of pawls");
+        checkError("A-Z\n5 3\n I MQ (AB)\n II ME (CD) (AEC)\n",
+                   "test:4:16: character 'C' appears twice");
+        checkError("A-Z\n5 3\n I MQ (AB\n", "test:3:7: unterminated cycle");
+        checkError("A-Z\n5 3\n I M1 (AB)\n", "test:3:5: notch '1'");
+        checkError("A-Z\n5 3\n I Q (AB)\n", "test:3:4: unknown type Q");
+        checkError("A-Z\n5 3\n B R (AB)\n", "test:3:2: reflector B");
+        checkError("A-Z\n5 3\n I MQ (A1)\n", "test:3:9: character '1'");
+        checkError("A-Z\n9999999999 3\n", "test:2:1: number of rotor slots");
+    }
+
+}
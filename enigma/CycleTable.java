@@ -0,0 +1,158 @@
+package enigma;
+
+/** The complete substitution performed by a machine in every state that
+ *  its moving rotors can reach, for one choice of rotors, plugboard and
+ *  settings of the rotors that do not move.  A machine using the table
+ *  converts each character with one step lookup and one substitution
+ *  lookup, whatever its starting position.
+ *  @author nishuang
+ */
+class CycleTable {
+
+    /** Largest number of states tabulated. */
+    static final int MAX_STATES = 1 << 20;
+
+    /** Largest number of substitution entries tabulated. */
+    static final int MAX_ENTRIES = 1 << 26;
+
+    /** Return a table for the rotors, plugboard and stationary rotor
+     *  settings of MACHINE, or null if it would be too large. */
+    static CycleTable of(Machine machine) {
+        int size = machine.alphabet().size();
+        if (size > 256) {
+            return null;
+        }
+        long states = 1;
+        for (int i = 0; i < machine.numRotors(); i += 1) {
+            if (machine.slotMoves(i)) {
+                states *= size;
+                if (states > MAX_STATES || states * size > MAX_ENTRIES) {
+                    return null;
+                }
+            }
+        }
+        return new CycleTable(machine, (int) states);
+    }
+
+    /** A table of the STATES states of the moving rotors of MACHINE. */
+    private CycleTable(Machine machine, int states) {
+        _size = machine.alphabet().size();
+        _template = new Machine(machine);
+        _template.useCycleTable(null);
+        int moving = 0;
+        for (int i = 0; i < machine.numRotors(); i += 1) {
+            if (machine.slotMoves(i)) {
+                moving += 1;
+            }
+        }
+        _moving = new int[moving];
+        for (int i = 0, k = 0; i < machine.numRotors(); i += 1) {
+            if (machine.slotMoves(i)) {
+                _moving[k] = i;
+                k += 1;
+            }
+        }
+        _next = new int[states];
+        _substitution = new byte[states * _size];
+        Machine walker = new Machine(_template);
+        for (int state = 0; state < states; state += 1) {
+            decode(state, walker);
+            for (int c = 0; c < _size; c += 1) {
+                _substitution[state * _size + c] = (byte) walker.substitute(c);
+            }
+            walker.advanceMachine();
+            _next[state] = encode(walker);
+        }
+    }
+
+    /** Return a string that is the same for two machines iff a table
+     *  built for one fits the other. */
+    static String keyOf(Machine machine) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < machine.numRotors(); i += 1) {
+            key.append(machine.slot(i).name()).append(' ');
+            if (!machine.slotMoves(i)) {
+                key.append(machine.slotSetting(i)).append(' ');
+            }
+        }
+        Permutation plugboard = machine.plugboard();
+        for (int c = 0; c < plugboard.size(); c += 1) {
+            key.append((char) plugboard.permute(c));
+        }
+        return key.toString();
+    }
+
+    /** Return true iff I describe MACHINE in its current configuration:
+     *  the same rotors in its slots, the same plugboard and the same
+     *  settings of the rotors that do not move. */
+    boolean fits(Machine machine) {
+        if (machine.numRotors() != _template.numRotors()
+            || !machine.plugboard().equals(_template.plugboard())) {
+            return false;
+        }
+        for (int i = 0; i < machine.numRotors(); i += 1) {
+            if (machine.slot(i) != _template.slot(i)
+                || machine.slotMoves(i) != _template.slotMoves(i)
+                || (!machine.slotMoves(i)
+                    && machine.slotSetting(i) != _template.slotSetting(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the state of the moving rotors of MACHINE. */
+    int encode(Machine machine) {
+        int state = 0;
+        for (int k = _moving.length - 1; k >= 0; k -= 1) {
+            state = state * _size + machine.slotSetting(_moving[k]);
+        }
+        return state;
+    }
+
+    /** Set the moving rotors of MACHINE to STATE. */
+    void decode(int state, Machine machine) {
+        for (int k = 0; k < _moving.length; k += 1) {
+            machine.setSlotSetting(_moving[k], state % _size);
+            state /= _size;
+        }
+    }
+
+    /** Return the number of states I tabulate. */
+    int states() {
+        return _next.length;
+    }
+
+    /** Return the number of bytes taken by my tables. */
+    long bytes() {
+        return 4L * _next.length + _substitution.length;
+    }
+
+    /** Return the state that follows STATE after one keystroke. */
+    int next(int state) {
+        return _next[state];
+    }
+
+    /** Return the conversion of C by the machine in STATE. */
+    int substitute(int state, int c) {
+        return _substitution[state * _size + c] & 0xff;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** A machine with my rotors, plugboard and stationary settings. */
+    private final Machine _template;
+
+    /** The slots whose rotors move, in order of increasing significance
+     *  in the state number. */
+    private final int[] _moving;
+
+    /** The successor of each state. */
+    private final int[] _next;
+
+    /** The substitution made in each state, the conversion of C in state
+     *  S being at index S * _size + C. */
+    private final byte[] _substitution;
+
+}
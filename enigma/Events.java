@@ -0,0 +1,74 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** JDK Flight Recorder events for the phases of a run.  While a
+ *  recording does not enable them, beginning and committing an event
+ *  costs next to nothing, so they stay in production code.
+ *  @author nishuang
+ */
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** Loading a machine configuration. */
+    @Name("enigma.ConfigLoad")
+    @Label("Configuration Load")
+    @Category("Enigma")
+    static final class ConfigLoad extends Event {
+
+        /** Name of the configuration file. */
+        @Label("File")
+        String file;
+
+        /** Whether the file was a compiled snapshot. */
+        @Label("Compiled")
+        boolean compiled;
+
+        /** Number of rotors available. */
+        @Label("Rotors")
+        int rotors;
+
+    }
+
+    /** Configuring a machine from a settings line. */
+    @Name("enigma.Setup")
+    @Label("Settings Setup")
+    @Category("Enigma")
+    @Description("Setting up a machine from a settings line")
+    static final class Setup extends Event {
+
+        /** The settings line. */
+        @Label("Settings")
+        String settings;
+
+        /** Whether the configured machine came from the settings
+         *  cache. */
+        @Label("Cached")
+        boolean cached;
+
+    }
+
+    /** Converting one message line. */
+    @Name("enigma.Conversion")
+    @Label("Message Conversion")
+    @Category("Enigma")
+    static final class Conversion extends Event {
+
+        /** Number of characters on the line. */
+        @Label("Line Length")
+        int length;
+
+        /** Number of characters converted. */
+        @Label("Characters")
+        int characters;
+
+    }
+
+}
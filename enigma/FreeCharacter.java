@@ -1,8 +1,6 @@
 package enigma;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Arrays;
 
 import static enigma.EnigmaException.*;
 
@@ -18,43 +16,49 @@ class FreeCharacter extends Alphabet {
      * @param input This is the input passed in the main.
      */
     FreeCharacter(String input) {
-        _input = input.toUpperCase();
-        for (int i = 0; i < _input.length(); i += 1) {
-            for (int j = 0; j < _input.length(); j += 1) {
-                if (i != j && _input.charAt(i) == _input.charAt(j)) {
-                    throw new EnigmaException("Wrong Alphabet input.");
-                } else if (_input.charAt(i) == '(') {
-                    throw new EnigmaException("Forbidden Special Char.");
-                } else if (_input.charAt(i) == ')') {
-                    throw new EnigmaException("Forbidden Special Char.");
-                } else if (_input.charAt(i) == '*') {
-                    throw new EnigmaException("Forbidden Special Char.");
-                }
+        _chars = input.toUpperCase().toCharArray();
+        char min = Character.MAX_VALUE, max = Character.MIN_VALUE;
+        for (char c : _chars) {
+            if (c == '(' || c == ')' || c == '*') {
+                throw new EnigmaException("Forbidden Special Char.");
             }
+            min = (char) Math.min(min, c);
+            max = (char) Math.max(max, c);
         }
-        for (int p = 0; p < _input.length(); p += 1) {
-            _random.put(_input.charAt(p), p);
+        _first = min;
+        _index = new int[_chars.length == 0 ? 0 : max - min + 1];
+        Arrays.fill(_index, -1);
+        for (int p = 0; p < _chars.length; p += 1) {
+            int slot = _chars[p] - _first;
+            if (_index[slot] != -1) {
+                throw new EnigmaException("Wrong Alphabet input.");
+            }
+            _index[slot] = p;
         }
+    }
 
+    /** Return the characters of this Alphabet in order. */
+    String characters() {
+        return new String(_chars);
     }
+
     @Override
     int size() {
-        return _input.length();
+        return _chars.length;
     }
 
     @Override
     boolean contains(char ch) {
-        final boolean check = _input.indexOf(ch) != -1;
-        return check;
+        int slot = ch - _first;
+        return slot >= 0 && slot < _index.length && _index[slot] != -1;
     }
 
     @Override
     char toChar(int index) {
         if (index < 0 || index >= size()) {
             throw error("character index out of range");
-        } else {
-            return getKeyByValue(_random, index);
         }
+        return _chars[index];
     }
 
     @Override
@@ -62,29 +66,16 @@ class FreeCharacter extends Alphabet {
         if (!contains(ch)) {
             throw error("character out of range");
         }
-        return _random.get(ch);
-    }
-
-    /** Helper function for using key to get value in hashmap.
-     * @return the key given the value of the hashmap.
-     * @param <T> this is the type parameter.
-     * @param <E> this is another type parameter.
-     * @param map this is the map given by T and E.
-     * @param value this is the input value.
-     *  */
-    private static <T, E> T getKeyByValue(Map<T, E> map, E value) {
-        for (Map.Entry<T, E> entry : map.entrySet()) {
-            if (Objects.equals(value, entry.getValue())) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return _index[ch - _first];
     }
 
+    /** Characters of this Alphabet, indexed by position. */
+    private final char[] _chars;
 
-    /** Input of characters in this Alphabet. */
-    private String _input;
+    /** The smallest character in this Alphabet. */
+    private final char _first;
 
-    /** Use A as the anchor for the character. */
-    private HashMap<Character, Integer> _random = new HashMap<>();
+    /** Position of each character C of this Alphabet at index C - _first,
+     *  or -1 for characters in that range that are not in the Alphabet. */
+    private final int[] _index;
 }
@@ -0,0 +1,400 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** The substitution a machine performs through its rotors, compiled into
+ *  a class of its own.  For one choice of rotors and plugboard, of()
+ *  writes the bytecode of a subclass whose substitute method is
+ *  unrolled: it looks the character up in the table of each slot in
+ *  turn, from the rightmost rotor to the reflector and back, with the
+ *  number of slots and the alphabet size as constants and each table
+ *  in a static final field, so that the JIT compiler sees one straight
+ *  run of array loads with no calls or loops.  The subclass is defined
+ *  as a hidden class, given the tables as its class data, and unloaded
+ *  once no machine uses it.  The settings of the slots are passed in on
+ *  each call, so one class serves every setting of its rotors.
+ *
+ *  The class file is written directly: a constant pool, one static
+ *  final int[] field per table, a constructor, a static initializer
+ *  that fetches the tables, and substitute.  None of the methods
+ *  branches, so no stack map frames are needed.
+ *  @author nishuang
+ */
+abstract class GeneratedPath {
+
+    /** Largest number of rotor slots compiled, which keeps the code of
+     *  substitute well inside the 64K limit of a method. */
+    static final int MAX_SLOTS = 1024;
+
+    /** Return the conversion of character index C by the rotors whose
+     *  slot settings are SETTINGS, with the plugboard of the machine I
+     *  was generated for. */
+    abstract int substitute(int c, int[] settings);
+
+    /** Return a generated path for the rotors and plugboard of MACHINE,
+     *  or null if they cannot be compiled (when the alphabet is too
+     *  large to tabulate or there are too many slots) or the runtime
+     *  will not define the class.  MACHINE then converts through its
+     *  tables one slot at a time, as before. */
+    static GeneratedPath of(Machine machine) {
+        int q = machine.numRotors() - 1;
+        if (q < 0 || q >= MAX_SLOTS) {
+            return null;
+        }
+        int[][] tables = new int[2 * q + 1][];
+        for (int k = 0; k <= q; k += 1) {
+            tables[k] = machine.slotForwardTable(q - k);
+            if (k < q) {
+                tables[q + 1 + k] = machine.slotBackwardTable(k + 1);
+            }
+        }
+        for (int[] table : tables) {
+            if (table == null) {
+                return null;
+            }
+        }
+        int n = machine.alphabet().size();
+        byte[] bytes = new ClassWriter(q, n).write();
+        try {
+            Class<?> generated = MethodHandles.lookup()
+                .defineHiddenClassWithClassData(bytes, tables, true)
+                .lookupClass();
+            return (GeneratedPath) generated.getDeclaredConstructor()
+                .newInstance();
+        } catch (ReflectiveOperationException | LinkageError
+                 | SecurityException | UnsupportedOperationException excp) {
+            return null;
+        }
+    }
+
+    /** Return a key identifying the rotors and plugboard of MACHINE, so
+     *  that machines with equal keys can share a generated path. */
+    static String keyOf(Machine machine) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < machine.numRotors(); i += 1) {
+            key.append(machine.slot(i).name()).append(' ');
+        }
+        Permutation plugboard = machine.plugboard();
+        for (int c = 0; c < plugboard.size(); c += 1) {
+            key.append((char) plugboard.permute(c));
+        }
+        return key.toString();
+    }
+
+    /** Writes the class file of a generated path. */
+    private static class ClassWriter {
+
+        /** A writer for a machine with Q + 1 slots over an alphabet of N
+         *  characters, whose tables, numbered as in the class data, are
+         *  the forward tables of slots Q down to 0 and then the backward
+         *  tables of slots 1 up to Q. */
+        ClassWriter(int q, int n) {
+            _q = q;
+            _n = n;
+        }
+
+        /** Return the class file. */
+        byte[] write() {
+            try {
+                int thisClass = classRef(NAME);
+                int superClass = classRef(SUPER);
+                int tableCount = 2 * _q + 1;
+                int[] fields = new int[tableCount];
+                int[] fieldNames = new int[tableCount];
+                int tableType = utf8("[I");
+                for (int j = 0; j < tableCount; j += 1) {
+                    fieldNames[j] = utf8("t" + j);
+                    fields[j] = ref(FIELDREF, thisClass, "t" + j, "[I");
+                }
+                byte[] init = constructor(superClass);
+                byte[] clinit = initializer(fields);
+                byte[] substitute = substitute(fields);
+                int code = utf8("Code");
+                int[] names = { utf8("<init>"), utf8("<clinit>"),
+                                utf8("substitute") };
+                int[] types = { utf8("()V"), utf8("()V"), utf8("(I[I)I") };
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(CLASS_VERSION);
+                out.writeShort(_pool.size() + 1);
+                for (byte[] entry : _pool) {
+                    out.write(entry);
+                }
+                out.writeShort(ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0);
+                out.writeShort(tableCount);
+                for (int j = 0; j < tableCount; j += 1) {
+                    out.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+                    out.writeShort(fieldNames[j]);
+                    out.writeShort(tableType);
+                    out.writeShort(0);
+                }
+                out.writeShort(3);
+                writeMethod(out, ACC_PUBLIC, names[0], types[0], code,
+                            1, 1, init);
+                writeMethod(out, ACC_STATIC, names[1], types[1], code,
+                            3, 1, clinit);
+                writeMethod(out, ACC_FINAL, names[2], types[2], code,
+                            4, 3, substitute);
+                out.writeShort(0);
+                return bytes.toByteArray();
+            } catch (IOException excp) {
+                throw new AssertionError(excp);
+            }
+        }
+
+        /** Return the code of a constructor that calls that of the
+         *  class whose constant is SUPERCLASS. */
+        private byte[] constructor(int superClass) {
+            Code code = new Code();
+            code.op(ALOAD_0);
+            code.op(INVOKESPECIAL);
+            code.u2(ref(METHODREF, superClass, "<init>", "()V"));
+            code.op(RETURN);
+            return code.bytes();
+        }
+
+        /** Return the code of a static initializer that stores each
+         *  table of the class data in the field whose constant is
+         *  FIELDS[J]. */
+        private byte[] initializer(int[] fields) {
+            int handles = classRef("java/lang/invoke/MethodHandles");
+            Code code = new Code();
+            code.op(INVOKESTATIC);
+            code.u2(ref(METHODREF, handles, "lookup",
+                        "()Ljava/lang/invoke/MethodHandles$Lookup;"));
+            code.op(LDC_W);
+            code.u2(string("_"));
+            code.op(LDC_W);
+            code.u2(classRef("[[I"));
+            code.op(INVOKESTATIC);
+            code.u2(ref(METHODREF, handles, "classData",
+                        "(Ljava/lang/invoke/MethodHandles$Lookup;"
+                        + "Ljava/lang/String;Ljava/lang/Class;)"
+                        + "Ljava/lang/Object;"));
+            code.op(CHECKCAST);
+            code.u2(classRef("[[I"));
+            code.op(ASTORE_0);
+            for (int j = 0; j < fields.length; j += 1) {
+                code.op(ALOAD_0);
+                pushInt(code, j);
+                code.op(AALOAD);
+                code.op(PUTSTATIC);
+                code.u2(fields[j]);
+            }
+            code.op(RETURN);
+            return code.bytes();
+        }
+
+        /** Return the code of substitute(c, settings), which keeps the
+         *  character on the stack and replaces it, for each table J in
+         *  turn, by tJ[settings[slot] * n + character]. */
+        private byte[] substitute(int[] fields) {
+            Code code = new Code();
+            code.op(ILOAD_1);
+            for (int j = 0; j < fields.length; j += 1) {
+                int slot = j <= _q ? _q - j : j - _q;
+                code.op(GETSTATIC);
+                code.u2(fields[j]);
+                code.op(SWAP);
+                code.op(ALOAD_2);
+                pushInt(code, slot);
+                code.op(IALOAD);
+                pushInt(code, _n);
+                code.op(IMUL);
+                code.op(IADD);
+                code.op(IALOAD);
+            }
+            code.op(IRETURN);
+            return code.bytes();
+        }
+
+        /** Add to CODE the shortest instruction that pushes the int
+         *  VALUE. */
+        private void pushInt(Code code, int value) {
+            if (value <= 5) {
+                code.op(ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                code.op(BIPUSH);
+                code.op(value);
+            } else if (value <= Short.MAX_VALUE) {
+                code.op(SIPUSH);
+                code.u2(value);
+            } else {
+                code.op(LDC_W);
+                code.u2(integer(value));
+            }
+        }
+
+        /** Write to OUT a method with access flags ACCESS, whose name and
+         *  descriptor are constants NAME and TYPE, with a Code attribute
+         *  (whose name is constant CODENAME) holding CODE, using at most
+         *  MAXSTACK stack entries and MAXLOCALS locals. */
+        private void writeMethod(DataOutputStream out, int access, int name,
+                                 int type, int codeName, int maxStack,
+                                 int maxLocals, byte[] code)
+            throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(type);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        /** Return the index of the Utf8 constant S. */
+        private int utf8(String s) {
+            return constant("U" + s, out -> {
+                out.writeByte(UTF8);
+                out.writeUTF(s);
+            });
+        }
+
+        /** Return the index of the Integer constant VALUE. */
+        private int integer(int value) {
+            return constant("I" + value, out -> {
+                out.writeByte(INTEGER);
+                out.writeInt(value);
+            });
+        }
+
+        /** Return the index of the String constant S. */
+        private int string(String s) {
+            int text = utf8(s);
+            return constant("S" + s, out -> {
+                out.writeByte(STRING);
+                out.writeShort(text);
+            });
+        }
+
+        /** Return the index of the Class constant for the class (or array
+         *  type) with internal name NAME. */
+        private int classRef(String name) {
+            int text = utf8(name);
+            return constant("C" + name, out -> {
+                out.writeByte(CLASS);
+                out.writeShort(text);
+            });
+        }
+
+        /** Return the index of the Fieldref or Methodref constant, as
+         *  KIND says, for the member NAME of type TYPE of the class whose
+         *  constant is OWNER. */
+        private int ref(int kind, int owner, String name, String type) {
+            int nameText = utf8(name), typeText = utf8(type);
+            int nameAndType = constant("N" + name + ":" + type, out -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameText);
+                out.writeShort(typeText);
+            });
+            return constant(kind + "/" + owner + "." + name + ":" + type,
+                            out -> {
+                                out.writeByte(kind);
+                                out.writeShort(owner);
+                                out.writeShort(nameAndType);
+                            });
+        }
+
+        /** Return the index of the constant identified by KEY, adding it
+         *  to the pool as written by ENTRY if it is not there yet. */
+        private int constant(String key, Entry entry) {
+            Integer index = _indices.get(key);
+            if (index == null) {
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    entry.write(new DataOutputStream(bytes));
+                    _pool.add(bytes.toByteArray());
+                } catch (IOException excp) {
+                    throw new AssertionError(excp);
+                }
+                index = _pool.size();
+                _indices.put(key, index);
+            }
+            return index;
+        }
+
+        /** Writes one entry of the constant pool. */
+        private interface Entry {
+            /** Write the entry to OUT. */
+            void write(DataOutputStream out) throws IOException;
+        }
+
+        /** Index of the last slot. */
+        private final int _q;
+
+        /** Size of the alphabet. */
+        private final int _n;
+
+        /** The constant pool, each entry as written to the class file. */
+        private final ArrayList<byte[]> _pool = new ArrayList<>();
+
+        /** Index in _pool (counting from 1) of each constant, by key. */
+        private final HashMap<String, Integer> _indices = new HashMap<>();
+
+    }
+
+    /** The instructions of one method. */
+    private static class Code {
+
+        /** Add the byte (or opcode) B. */
+        void op(int b) {
+            _bytes.write(b);
+        }
+
+        /** Add the two-byte operand U. */
+        void u2(int u) {
+            _bytes.write(u >>> 8);
+            _bytes.write(u);
+        }
+
+        /** Return the instructions added. */
+        byte[] bytes() {
+            return _bytes.toByteArray();
+        }
+
+        /** The instructions added. */
+        private final ByteArrayOutputStream _bytes =
+            new ByteArrayOutputStream();
+
+    }
+
+    /** Internal names of the generated class and its superclass. */
+    private static final String NAME = "enigma/GeneratedPath$Impl",
+        SUPER = "enigma/GeneratedPath";
+
+    /** Class file version written (that of Java 17). */
+    private static final int CLASS_VERSION = 61;
+
+    /** Access flags. */
+    private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002,
+        ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    /** Constant pool tags. */
+    private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, STRING = 8,
+        FIELDREF = 9, METHODREF = 10, NAME_AND_TYPE = 12;
+
+    /** Opcodes. */
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11,
+        LDC_W = 0x13, ILOAD_1 = 0x1b, ALOAD_0 = 0x2a, ALOAD_2 = 0x2c,
+        IALOAD = 0x2e, AALOAD = 0x32, ASTORE_0 = 0x4b, SWAP = 0x5f,
+        IADD = 0x60, IMUL = 0x68, IRETURN = 0xac, RETURN = 0xb1,
+        GETSTATIC = 0xb2, PUTSTATIC = 0xb3, INVOKESPECIAL = 0xb7,
+        INVOKESTATIC = 0xb8, CHECKCAST = 0xc0;
+
+}
@@ -0,0 +1,102 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** Formats message lines in groups of five characters separated by
+ *  single spaces (the last group of a line may be shorter), writing them
+ *  through its own buffer to an underlying Writer.  Characters are
+ *  placed into groups as they arrive, so a line of any length is
+ *  formatted in linear time with constant extra memory.
+ *  @author nishuang
+ */
+class GroupFormatter {
+
+    /** A formatter writing to OUT through a buffer of BUFFERSIZE
+     *  characters. */
+    GroupFormatter(Writer out, int bufferSize) {
+        _out = out;
+        _buffer = new char[Math.max(bufferSize, 2)];
+    }
+
+    /** Append character C to the current line. */
+    void put(char c) throws IOException {
+        if (_end + 2 > _buffer.length) {
+            drain();
+        }
+        if (_inGroup == GROUP_SIZE) {
+            _buffer[_end] = ' ';
+            _end += 1;
+            _inGroup = 0;
+        }
+        _buffer[_end] = c;
+        _end += 1;
+        _inGroup += 1;
+    }
+
+    /** Append the LEN characters of CHARS starting at OFF to the current
+     *  line. */
+    void put(char[] chars, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i += 1) {
+            put(chars[i]);
+        }
+    }
+
+    /** Append the LEN already-formatted characters of TEXT starting at
+     *  OFF, which must consist of whole lines, at the start of a line. */
+    void putLines(char[] text, int off, int len) throws IOException {
+        if (_end + len > _buffer.length) {
+            drain();
+        }
+        if (len > _buffer.length) {
+            _out.write(text, off, len);
+        } else {
+            System.arraycopy(text, off, _buffer, _end, len);
+            _end += len;
+        }
+    }
+
+    /** Terminate the current line and start a new one. */
+    void endLine() throws IOException {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+            if (_end == _buffer.length) {
+                drain();
+            }
+            _buffer[_end] = LINE_SEPARATOR.charAt(i);
+            _end += 1;
+        }
+        _inGroup = 0;
+    }
+
+    /** Write out everything formatted so far and flush the underlying
+     *  Writer. */
+    void flush() throws IOException {
+        drain();
+        _out.flush();
+    }
+
+    /** Write out the contents of my buffer. */
+    private void drain() throws IOException {
+        _out.write(_buffer, 0, _end);
+        _end = 0;
+    }
+
+    /** Number of characters in each group. */
+    static final int GROUP_SIZE = 5;
+
+    /** Terminator written after each line. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Destination of formatted lines. */
+    private final Writer _out;
+
+    /** Characters formatted but not yet written to _out. */
+    private final char[] _buffer;
+
+    /** Number of characters in use in _buffer. */
+    private int _end;
+
+    /** Number of characters in the current group of the current line. */
+    private int _inGroup;
+
+}
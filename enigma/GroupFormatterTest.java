@@ -0,0 +1,50 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/** The suite of all JUnit tests for the GroupFormatter class.
+ *  @Shuang
+ */
+public class GroupFormatterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return MSGS formatted one per line by a formatter whose buffer
+     *  holds BUFFERSIZE characters. */
+    private String format(int bufferSize, String... msgs) throws IOException {
+        StringWriter out = new StringWriter();
+        GroupFormatter formatter = new GroupFormatter(out, bufferSize);
+        for (String msg : msgs) {
+            formatter.put(msg.toCharArray(), 0, msg.length());
+            formatter.endLine();
+        }
+        formatter.flush();
+        return out.toString();
+    }
+
+    @Test
+    public void checkGroups() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals(nl, format(64, ""));
+        assertEquals("ABC" + nl, format(64, "ABC"));
+        assertEquals("ABCDE" + nl, format(64, "ABCDE"));
+        assertEquals("ABCDE F" + nl + "GHIJK LMNOP" + nl,
+                     format(64, "ABCDEF", "GHIJKLMNOP"));
+    }
+
+    @Test
+    public void checkSmallBuffer() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("ABCDE FGHIJ KL" + nl + "MN" + nl,
+                     format(3, "ABCDEFGHIJKL", "MN"));
+    }
+
+}
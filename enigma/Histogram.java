@@ -0,0 +1,86 @@
+package enigma;
+
+/** A histogram of non-negative long values (such as latencies in
+ *  nanoseconds) with a fixed number of buckets: values below
+ *  2 ** SUB_BITS each have their own bucket, and each larger power-of-two
+ *  range is split into 2 ** SUB_BITS equal buckets, so that recording a
+ *  value is a few arithmetic operations and an increment, and any
+ *  reported percentile is within 1 part in 2 ** SUB_BITS of the truth.
+ *  @author nishuang
+ */
+class Histogram {
+
+    /** Record VALUE, which must be non-negative. */
+    void record(long value) {
+        _counts[bucket(value)] += 1;
+        _total += 1;
+        _max = Math.max(_max, value);
+    }
+
+    /** Add the values recorded in OTHER to mine. */
+    void add(Histogram other) {
+        for (int i = 0; i < _counts.length; i += 1) {
+            _counts[i] += other._counts[i];
+        }
+        _total += other._total;
+        _max = Math.max(_max, other._max);
+    }
+
+    /** Return the number of values recorded. */
+    long count() {
+        return _total;
+    }
+
+    /** Return the largest value recorded, or 0 if none. */
+    long max() {
+        return _max;
+    }
+
+    /** Return (an upper bound, within the precision described above, on)
+     *  the value below which P percent of the recorded values lie, or 0
+     *  if none have been recorded. */
+    long percentile(double p) {
+        long rank = (long) Math.ceil(_total * p / 100);
+        long seen = 0;
+        for (int i = 0; i < _counts.length; i += 1) {
+            seen += _counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(highest(i), _max);
+            }
+        }
+        return _max;
+    }
+
+    /** Return the bucket holding VALUE. */
+    private static int bucket(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | SUBS);
+        int shift = magnitude - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (value >>> shift);
+    }
+
+    /** Return the largest value in bucket I. */
+    private static long highest(int i) {
+        int shift = (i >>> SUB_BITS) - 1;
+        if (shift < 0) {
+            return i;
+        }
+        long first = (long) ((i & (SUBS - 1)) + SUBS) << shift;
+        return first + (1L << shift) - 1;
+    }
+
+    /** Log base 2 of the number of buckets per power of two. */
+    static final int SUB_BITS = 5;
+
+    /** Number of buckets per power of two. */
+    private static final int SUBS = 1 << SUB_BITS;
+
+    /** Count of values in each bucket. */
+    private final long[] _counts = new long[(64 - SUB_BITS + 1) << SUB_BITS];
+
+    /** Number of values recorded. */
+    private long _total;
+
+    /** Largest value recorded. */
+    private long _max;
+
+}
@@ -0,0 +1,61 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Histogram class.
+ *  @Shuang
+ */
+public class HistogramTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void checkEmpty() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(50));
+    }
+
+    @Test
+    public void checkSmallValuesExact() {
+        Histogram h = new Histogram();
+        for (int v = 1; v <= 20; v += 1) {
+            h.record(v);
+        }
+        assertEquals(20, h.count());
+        assertEquals(10, h.percentile(50));
+        assertEquals(18, h.percentile(90));
+        assertEquals(20, h.percentile(100));
+        assertEquals(20, h.max());
+    }
+
+    @Test
+    public void checkLargeValuesWithinPrecision() {
+        Histogram h = new Histogram();
+        for (long v = 1; v <= 100000; v += 1) {
+            h.record(v * 1000);
+        }
+        long p99 = h.percentile(99);
+        assertTrue(p99 >= 99_000_000L);
+        assertTrue(p99 <= 99_000_000L + 99_000_000L / 32);
+        assertEquals(100_000_000L, h.max());
+    }
+
+    @Test
+    public void checkAdd() {
+        Histogram a = new Histogram(), b = new Histogram();
+        a.record(5);
+        b.record(7);
+        b.record(Long.MAX_VALUE);
+        a.add(b);
+        assertEquals(3, a.count());
+        assertEquals(Long.MAX_VALUE, a.max());
+        assertEquals(5, a.percentile(10));
+    }
+
+}
@@ -0,0 +1,149 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The rotor arrangements that a key search tries for a machine: every
+ *  order of its available rotors that puts a reflector in slot 0,
+ *  non-moving rotors in the slots without pawls and moving rotors in
+ *  the rest, combined with every setting of the rotors that never move.
+ *  Each such unit of the search fixes everything but the positions of
+ *  the moving rotors, and so corresponds to one CycleTable.
+ *  @author nishuang
+ */
+class KeySpace {
+
+    /** The arrangements of the rotors available to the unconfigured
+     *  machine MADE. */
+    KeySpace(Machine made) {
+        _made = made;
+        _size = made.alphabet().size();
+        ArrayList<Rotor> rotors = new ArrayList<>(made.allRotors());
+        _orders = new ArrayList<>();
+        addOrders(rotors, new String[made.numRotors()],
+                  new boolean[rotors.size()], 0);
+        int stationary = made.numRotors() - made.numPawls() - 1;
+        if (made.numPawls() == 0) {
+            stationary -= 1;
+        }
+        long combinations = 1;
+        for (int i = 0; i < stationary; i += 1) {
+            combinations *= _size;
+        }
+        if (combinations * _orders.size() > Integer.MAX_VALUE) {
+            throw error("too many rotor arrangements to search");
+        }
+        _combinations = (int) combinations;
+    }
+
+    /** Add to _orders every completion of ORDER from slot I on using the
+     *  ROTORS not marked in USED. */
+    private void addOrders(List<Rotor> rotors, String[] order, boolean[] used,
+                           int i) {
+        if (i == order.length) {
+            _orders.add(order.clone());
+            return;
+        }
+        int fixed = _made.numRotors() - _made.numPawls();
+        for (int k = 0; k < rotors.size(); k += 1) {
+            Rotor rotor = rotors.get(k);
+            boolean fits = i == 0 ? rotor.reflecting()
+                : i < fixed ? !rotor.reflecting() && !rotor.rotates()
+                : rotor.rotates();
+            if (!used[k] && fits) {
+                used[k] = true;
+                order[i] = rotor.name();
+                addOrders(rotors, order, used, i + 1);
+                used[k] = false;
+            }
+        }
+    }
+
+    /** Return the number of rotor orders. */
+    int numOrders() {
+        return _orders.size();
+    }
+
+    /** Return the number of units: rotor orders times settings of the
+     *  stationary rotors. */
+    int size() {
+        return _orders.size() * _combinations;
+    }
+
+    /** Return a copy of the unconfigured machine with the rotors of
+     *  order UNIT / (settings of the stationary rotors) inserted, its
+     *  stationary rotors at setting number UNIT % (that number), and its
+     *  moving rotors at their first position. */
+    Machine machine(int unit) {
+        String[] order = _orders.get(unit / _combinations);
+        Machine machine = new Machine(_made);
+        machine.insertRotors(order);
+        machine.checkRotorslots();
+        Alphabet alphabet = machine.alphabet();
+        char[] setting = new char[order.length - 1];
+        int combination = unit % _combinations;
+        for (int i = setting.length; i >= 1; i -= 1) {
+            int posn = 0;
+            if (!machine.slotMoves(i)) {
+                posn = combination % _size;
+                combination /= _size;
+            }
+            setting[i - 1] = alphabet.toChar(posn);
+        }
+        machine.setRotors(new String(setting));
+        return machine;
+    }
+
+    /** Return the indices in ALPHABET of the letters of TEXT, ignoring
+     *  whitespace and folding lower case into upper case. */
+    static int[] indices(String text, Alphabet alphabet) {
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                c = Character.toUpperCase(c);
+                if (!alphabet.contains(c)) {
+                    throw error("character '%c' not in alphabet", c);
+                }
+                result[n] = alphabet.toInt(c);
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Return the settings line that configures a machine like MACHINE,
+     *  with the plugboard that takes each index X to PLUGBOARD[X]. */
+    static String settingsLine(Machine machine, int[] plugboard) {
+        Alphabet alphabet = machine.alphabet();
+        StringBuilder line = new StringBuilder("*");
+        for (int i = 0; i < machine.numRotors(); i += 1) {
+            line.append(' ').append(machine.slot(i).name());
+        }
+        line.append(' ').append(machine.rotorSettings());
+        for (int x = 0; x < plugboard.length; x += 1) {
+            if (plugboard[x] > x) {
+                line.append(" (").append(alphabet.toChar(x))
+                    .append(alphabet.toChar(plugboard[x])).append(')');
+            }
+        }
+        return line.toString();
+    }
+
+    /** Unconfigured machine supplying rotors and slots. */
+    private final Machine _made;
+
+    /** Size of the alphabet of _made. */
+    private final int _size;
+
+    /** Rotor orders, each listed by rotor name from slot 0. */
+    private final ArrayList<String[]> _orders;
+
+    /** Number of settings of the stationary rotors of each order. */
+    private final int _combinations;
+
+}
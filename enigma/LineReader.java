@@ -0,0 +1,168 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/** Reads lines of text, as BufferedReader.readLine does, without ever
+ *  holding more than a fixed number of characters of one line.  A line
+ *  longer than the limit is returned cut short, and the rest of it is
+ *  then read in pieces with readRest.  Lines end at "\n", "\r" or
+ *  "\r\n".
+ *  @author nishuang
+ */
+class LineReader {
+
+    /** A reader of the lines of IN, reading BUFFERSIZE characters at a
+     *  time and holding at most LIMIT characters of any one line. */
+    LineReader(Reader in, int bufferSize, int limit) {
+        _in = in;
+        _limit = limit;
+        _buffer = new char[bufferSize];
+        _line = new char[Math.min(limit, bufferSize)];
+    }
+
+    /** Return the next line, without its terminator, or null at the end
+     *  of the input.  If the line is longer than my limit, return only
+     *  its first part and set cut(), so that the rest can be read by
+     *  readRest.  Whitespace at the start of a line that would fill
+     *  the limit on its own is shortened, keeping at least one
+     *  character.  Any unread rest of the previous line is skipped. */
+    String readLine() throws IOException {
+        skipRest();
+        int len = 0;
+        boolean blank = true;
+        while (true) {
+            if (_pos == _end && !fill()) {
+                _cut = false;
+                return len == 0 && _atEnd ? null : new String(_line, 0, len);
+            }
+            char c = _buffer[_pos];
+            if (_skipNewline) {
+                _skipNewline = false;
+                if (c == '\n') {
+                    _pos += 1;
+                    continue;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                _pos += 1;
+                _skipNewline = c == '\r';
+                _cut = false;
+                return new String(_line, 0, len);
+            }
+            if (len == _limit) {
+                if (!blank) {
+                    _cut = true;
+                    return new String(_line, 0, len);
+                } else if (Character.isWhitespace(c)) {
+                    _pos += 1;
+                    continue;
+                }
+                len = 1;
+            }
+            if (len == _line.length) {
+                _line = Arrays.copyOf(_line, Math.min(_limit, 2 * len));
+            }
+            _line[len] = c;
+            len += 1;
+            blank = blank && Character.isWhitespace(c);
+            _pos += 1;
+        }
+    }
+
+    /** Return true iff the last line returned by readLine was cut short. */
+    boolean cut() {
+        return _cut;
+    }
+
+    /** Read up to LEN characters of the rest of the last line returned by
+     *  readLine into DST starting at OFF, returning the number read, or
+     *  -1 if none remain. */
+    int readRest(char[] dst, int off, int len) throws IOException {
+        int k = 0;
+        while (_cut && k < len) {
+            if (_pos == _end && !fill()) {
+                _cut = false;
+                break;
+            }
+            char c = _buffer[_pos];
+            _pos += 1;
+            if (c == '\n' || c == '\r') {
+                _skipNewline = c == '\r';
+                _cut = false;
+            } else {
+                dst[off + k] = c;
+                k += 1;
+            }
+        }
+        return k == 0 && !_cut ? -1 : k;
+    }
+
+    /** Skip the rest of the last line returned by readLine. */
+    void skipRest() throws IOException {
+        while (_cut) {
+            if (_pos == _end && !fill()) {
+                _cut = false;
+                break;
+            }
+            char c = _buffer[_pos];
+            _pos += 1;
+            if (c == '\n' || c == '\r') {
+                _skipNewline = c == '\r';
+                _cut = false;
+            }
+        }
+    }
+
+    /** Return true iff more input can be read without blocking. */
+    boolean ready() throws IOException {
+        return _pos < _end || _in.ready();
+    }
+
+    /** Refill my buffer, returning false at the end of the input. */
+    private boolean fill() throws IOException {
+        if (_atEnd) {
+            return false;
+        }
+        int n;
+        do {
+            n = _in.read(_buffer, 0, _buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            _atEnd = true;
+            return false;
+        }
+        _pos = 0;
+        _end = n;
+        return true;
+    }
+
+    /** Source of the lines. */
+    private final Reader _in;
+
+    /** Largest number of characters of a line held at once. */
+    private final int _limit;
+
+    /** Characters read from _in, of which those from _pos up to _end
+     *  have not yet been consumed. */
+    private final char[] _buffer;
+
+    /** See _buffer. */
+    private int _pos, _end;
+
+    /** The line being read. */
+    private char[] _line;
+
+    /** True iff the last line returned was cut short and its rest has
+     *  not all been read. */
+    private boolean _cut;
+
+    /** True iff the last line ended at "\r", so that an immediately
+     *  following "\n" belongs to it. */
+    private boolean _skipNewline;
+
+    /** True once _in is exhausted. */
+    private boolean _atEnd;
+
+}
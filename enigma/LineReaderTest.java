@@ -0,0 +1,77 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/** The suite of all JUnit tests for the LineReader class.
+ *  @Shuang
+ */
+public class LineReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a reader of TEXT reading 3 characters at a time and
+     *  holding at most LIMIT characters of a line. */
+    private LineReader reader(String text, int limit) {
+        return new LineReader(new StringReader(text), 3, limit);
+    }
+
+    /** Return the rest of the last line read by IN. */
+    private String rest(LineReader in) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[2];
+        int n;
+        while ((n = in.readRest(buffer, 0, buffer.length)) >= 0) {
+            result.append(buffer, 0, n);
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void checkLineEnds() throws IOException {
+        LineReader in = reader("AB\r\nCD\rEF\n\nGH", 100);
+        assertEquals("AB", in.readLine());
+        assertEquals("CD", in.readLine());
+        assertEquals("EF", in.readLine());
+        assertEquals("", in.readLine());
+        assertEquals("GH", in.readLine());
+        assertFalse(in.cut());
+        assertNull(in.readLine());
+        assertNull(reader("", 100).readLine());
+        in = reader("AB\n", 100);
+        assertEquals("AB", in.readLine());
+        assertNull(in.readLine());
+    }
+
+    @Test
+    public void checkLongLines() throws IOException {
+        LineReader in = reader("ABCDEFGHIJ\r\nKLMNOPQ\nRS", 4);
+        assertEquals("ABCD", in.readLine());
+        assertTrue(in.cut());
+        assertEquals("EFGHIJ", rest(in));
+        assertFalse(in.cut());
+        assertEquals("KLMN", in.readLine());
+        assertTrue(in.cut());
+        assertEquals("RS", in.readLine());
+        assertFalse(in.cut());
+        assertNull(in.readLine());
+    }
+
+    @Test
+    public void checkLeadingWhitespace() throws IOException {
+        LineReader in = reader("         AB\n      \nCDEF", 4);
+        assertEquals(" AB", in.readLine());
+        assertFalse(in.cut());
+        assertEquals("    ", in.readLine());
+        assertEquals("CDEF", in.readLine());
+        assertFalse(in.cut());
+    }
+
+}
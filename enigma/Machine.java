@@ -1,12 +1,18 @@
 package enigma;
 
+import java.nio.CharBuffer;
 import java.util.HashMap;
 import java.util.Collection;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  The rotors, their
+ *  conversion tables and the plugboard are immutable and shared by all
+ *  copies of a machine (see Machine(Machine)); what belongs to each
+ *  machine alone is the setting of each of its slots, and its position
+ *  in any cycle table it uses.  One loaded configuration can therefore
+ *  back any number of machines converting concurrently.
  *  @author nishuang
  */
 class Machine {
@@ -24,8 +30,35 @@ class Machine {
             String name = object.name();
             _allrotors.put(name, object);
         }
-        _myrotorslots = new ArrayList<Rotor>(numRotors());
-        _plugboard = new Permutation("", new CharacterRange('A', 'Z'));
+        _myrotorslots = new Rotor[0];
+        _settings = new int[0];
+        _rotates = new boolean[0];
+        _plugboard = new Permutation("", alpha);
+    }
+
+    /** A new machine with the same configuration, rotors, plugboard and
+     *  rotor settings as OTHER.  Everything but the settings is shared,
+     *  since none of it is modified in place, so the copy is cheap and
+     *  the two machines may then be used independently. */
+    Machine(Machine other) {
+        _alphabet = other._alphabet;
+        _numRotors = other._numRotors;
+        _pawls = other._pawls;
+        _allr = other._allr;
+        _allrotors = other._allrotors;
+        _myrotorslots = other._myrotorslots;
+        _settings = other._settings.clone();
+        _rotates = other._rotates;
+        _plugboard = other._plugboard;
+        _forwardTables = other._forwardTables;
+        _backwardTables = other._backwardTables;
+        _foldedPlugboard = other._foldedPlugboard;
+        _notchPrefix = other._notchPrefix;
+        _openPositions = other._openPositions;
+        _seekable = other._seekable;
+        _cycle = other._cycle;
+        _cycleState = other._cycleState;
+        _generated = other._generated;
     }
 
     /** Return the number of rotor slots I have. */
@@ -38,6 +71,58 @@ class Machine {
         return _pawls;
     }
 
+    /** Return all the rotors available to me. */
+    Collection<Rotor> allRotors() {
+        return _allr;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the rotor in slot I. */
+    Rotor slot(int i) {
+        return _myrotorslots[i];
+    }
+
+    /** Return true iff the setting of slot I can change as I convert:
+     *  that is, if its rotor rotates or it is my rightmost slot. */
+    boolean slotMoves(int i) {
+        return _rotates[i] || i == _myrotorslots.length - 1;
+    }
+
+    /** Return the setting of slot I, without regard to any cycle table
+     *  I am using. */
+    int slotSetting(int i) {
+        return _settings[i];
+    }
+
+    /** Set the setting of slot I to POSN, without regard to any cycle
+     *  table I am using. */
+    void setSlotSetting(int i, int posn) {
+        _settings[i] = posn;
+    }
+
+    /** Return the forward conversions of slot I at every setting, laid
+     *  out as for Rotor.forwardTable, with my plugboard folded into those
+     *  of my rightmost slot; or null if my alphabet is too large to
+     *  tabulate. */
+    int[] slotForwardTable(int i) {
+        return _foldedPlugboard ? _forwardTables[i] : null;
+    }
+
+    /** Return the backward conversions of slot I, as for
+     *  slotForwardTable. */
+    int[] slotBackwardTable(int i) {
+        return _foldedPlugboard ? _backwardTables[i] : null;
+    }
+
+    /** Return my plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
@@ -45,65 +130,305 @@ class Machine {
         if (rotors.length != numRotors()) {
             throw new EnigmaException("Wrong num of rotors.");
         }
-        _myrotorslots = new ArrayList<Rotor>(numRotors());
+        Rotor[] slots = new Rotor[numRotors()];
         for (int i = 0; i < numRotors(); i += 1) {
             if (!_allrotors.keySet().contains(rotors[i])) {
                 throw new EnigmaException("Invalid rotor name.");
             }
-            Rotor x = _allrotors.get(rotors[i]);
-            _myrotorslots.add(i, x);
+            slots[i] = _allrotors.get(rotors[i]);
         }
+        _cycle = null;
+        _myrotorslots = slots;
+        _settings = new int[slots.length];
+        _rotates = new boolean[slots.length];
+        for (int i = 0; i < slots.length; i += 1) {
+            _rotates[i] = slots[i].rotates();
+        }
+        buildTables();
+        buildNotchTables();
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 upper-case letters. The first letter refers to the
      *  leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
+        if (setting.length() != _myrotorslots.length - 1) {
+            throw new EnigmaException("Wrong length of initial setting.");
+        }
         for (int i = 0; i < setting.length(); i += 1) {
-            _myrotorslots.get(i + 1).set(setting.charAt(i));
+            _settings[i + 1] = _alphabet.toInt(setting.charAt(i));
+        }
+        if (_cycle != null && !_cycle.fits(this)) {
+            _cycle = null;
+        } else if (_cycle != null) {
+            _cycleState = _cycle.encode(this);
         }
     }
 
+    /** Return the current settings of my rotors as a string of
+     *  numRotors()-1 characters, in the form accepted by setRotors. */
+    String rotorSettings() {
+        syncSettings();
+        char[] result = new char[_settings.length - 1];
+        for (int i = 1; i < _settings.length; i += 1) {
+            result[i - 1] = _alphabet.toChar(_settings[i]);
+        }
+        return new String(result);
+    }
+
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        useCycleTable(null);
         _plugboard = plugboard;
+        buildTables();
     }
 
-    /** Advance the whole machine after one click.
-     * Update the setting of the rotors. */
+    /** Collect the conversion tables of the rotors in my slots, folding
+     *  the plugboard into the tables of the rightmost rotor so that each
+     *  rotor pass of convert(int) is a single array load.  Rotors whose
+     *  alphabet is too large to tabulate are left without tables. */
+    private void buildTables() {
+        _generated = null;
+        int q = _myrotorslots.length - 1;
+        if (q < 0) {
+            return;
+        }
+        _forwardTables = new int[q + 1][];
+        _backwardTables = new int[q + 1][];
+        for (int i = 0; i <= q; i += 1) {
+            _forwardTables[i] = _myrotorslots[i].forwardTable();
+            _backwardTables[i] = _myrotorslots[i].backwardTable();
+        }
+        _foldedPlugboard = _forwardTables[q] != null;
+        if (!_foldedPlugboard) {
+            return;
+        }
+        int n = _alphabet.size();
+        int[] forward = new int[n * n];
+        int[] backward = new int[n * n];
+        for (int posn = 0; posn < n; posn += 1) {
+            for (int p = 0; p < n; p += 1) {
+                forward[posn * n + p] =
+                    _forwardTables[q][posn * n + _plugboard.permute(p)];
+                backward[posn * n + p] =
+                    _plugboard.permute(_backwardTables[q][posn * n + p]);
+            }
+        }
+        if (q == 0) {
+            for (int p = 0; p < n; p += 1) {
+                forward[p] = _plugboard.permute(forward[p]);
+            }
+        }
+        _forwardTables[q] = forward;
+        _backwardTables[q] = backward;
+    }
 
+    /** Advance the whole machine after one click.
+     * Update the setting of the rotors.  A rotor steps if it is in the
+     * rightmost slot, if the rotor to its right is at a notch, or if it
+     * is itself at a notch and the rotor to its left rotates (the double
+     * step).  All notches are judged before anything moves. */
     void advanceMachine() {
-        int q = numRotors() - 1;
-        HashSet<Rotor> advanced = new HashSet<>();
-        for (Rotor object : _myrotorslots.subList(1, q + 1)) {
-            if (object.atNotch()) {
-                int ind = _myrotorslots.indexOf(object);
-                if (_myrotorslots.get(ind - 1).rotates()) {
-                    if (!advanced.contains(_myrotorslots.get(ind - 1))) {
-                        _myrotorslots.get(ind - 1).advance();
-                        advanced.add(_myrotorslots.get(ind - 1));
-                    }
-                    if (_myrotorslots.indexOf(object) != q) {
-                        if (!advanced.contains(object)) {
-                            object.advance();
-                            advanced.add(object);
-                        }
+        if (_cycle != null) {
+            _cycleState = _cycle.next(_cycleState);
+            return;
+        }
+        int q = _myrotorslots.length - 1;
+        int n = _alphabet.size();
+        boolean here = false;
+        for (int i = 0; i <= q; i += 1) {
+            boolean right = i < q
+                && _myrotorslots[i + 1].atNotch(_settings[i + 1]);
+            if (i == q || (right && _rotates[i])
+                || (here && _rotates[i - 1])) {
+                int posn = _settings[i] + 1;
+                _settings[i] = posn == n ? 0 : posn;
+            }
+            here = right;
+        }
+    }
+
+    /** Advance me N keystrokes one at a time, adding to STEPS[I] the
+     *  number of times slot I moves, and return how many of those moves
+     *  were double steps: a slot other than the rightmost moving because
+     *  it was at its own notch rather than because its right neighbour
+     *  was.  Meant for statistics; advanceMachine and seek are faster. */
+    long countSteps(long n, long[] steps) {
+        CycleTable cycle = _cycle;
+        useCycleTable(null);
+        int q = _myrotorslots.length - 1;
+        int size = _alphabet.size();
+        long doubleSteps = 0;
+        for (long k = 0; k < n; k += 1) {
+            boolean here = false;
+            for (int i = 0; i <= q; i += 1) {
+                boolean right = i < q
+                    && _myrotorslots[i + 1].atNotch(_settings[i + 1]);
+                boolean carried = i == q || (right && _rotates[i]);
+                if (carried || (here && _rotates[i - 1])) {
+                    int posn = _settings[i] + 1;
+                    _settings[i] = posn == size ? 0 : posn;
+                    steps[i] += 1;
+                    if (!carried) {
+                        doubleSteps += 1;
                     }
                 }
+                here = right;
+            }
+        }
+        useCycleTable(cycle);
+        return doubleSteps;
+    }
+
+    /** Advance the machine as if N characters had been converted, in
+     *  time proportional to the square of the number of slots rather
+     *  than to N.  Falls back to stepping N times when some rotating
+     *  rotor has notches at adjacent positions, for which the counting
+     *  argument below does not hold.
+     *
+     *  After one ordinary step, every rotor that double-steps sits on a
+     *  notch for exactly one keystroke per visit, so the slot to its
+     *  left is driven once for each notch position it passes.  Working
+     *  leftward from the rightmost slot, which always steps, the number
+     *  of times each slot is driven determines how far it turns: a slot
+     *  passes one non-notch position per drive, and leaves each notch
+     *  it lands on one keystroke later, unless the window ends first. */
+    void seek(long n) {
+        if (n < 0) {
+            throw new EnigmaException("Cannot seek backwards.");
+        }
+        if (n == 0) {
+            return;
+        }
+        if (_cycle != null) {
+            CycleTable cycle = _cycle;
+            useCycleTable(null);
+            seek(n);
+            useCycleTable(cycle);
+            return;
+        }
+        if (!_seekable) {
+            for (long k = 0; k < n; k += 1) {
+                advanceMachine();
+            }
+            return;
+        }
+        advanceMachine();
+        n -= 1;
+        int q = _myrotorslots.length - 1;
+        int size = _alphabet.size();
+        long[][] turns = new long[q + 1][q + 2];
+        for (int j = q; j >= 0; j -= 1) {
+            for (int d = 0; d <= j; d += 1) {
+                turns[j][d] = turns(j, n - d, d, turns);
+            }
+        }
+        for (int j = 0; j <= q; j += 1) {
+            _settings[j] = (int) ((_settings[j] + turns[j][0]) % size);
+        }
+    }
+
+    /** Return the number of times slot J turns in the first T keystrokes
+     *  of a seek, which is D keystrokes before its end, given the counts
+     *  TURNS already computed for the slots to the right of J. */
+    private long turns(int j, long t, int d, long[][] turns) {
+        int q = _myrotorslots.length - 1;
+        if (t <= 0) {
+            return 0;
+        } else if (j == q) {
+            return t;
+        } else if (!_rotates[j]) {
+            return 0;
+        }
+        long drives = notchesPassed(j + 1, turns[j + 1][d]);
+        if (j == 0 || !_rotates[j - 1]) {
+            return drives;
+        }
+        long result = passOpen(j, drives);
+        int landing = (int) ((_settings[j] + result) % _alphabet.size());
+        if (_myrotorslots[j].atNotch(landing)
+            && notchesPassed(j + 1, turns[j + 1][d + 1]) == drives) {
+            result += 1;
+        }
+        return result;
+    }
 
+    /** Return the number of notch positions slot J passes in turning
+     *  COUNT times from its current setting. */
+    private long notchesPassed(int j, long count) {
+        int[] prefix = _notchPrefix[j];
+        int size = _alphabet.size();
+        int start = _settings[j];
+        int rem = (int) (count % size);
+        long result = (count / size) * prefix[size];
+        if (start + rem <= size) {
+            result += prefix[start + rem] - prefix[start];
+        } else {
+            result += prefix[size] - prefix[start] + prefix[start + rem - size];
+        }
+        return result;
+    }
+
+    /** Return the number of turns slot J makes from its current setting
+     *  up to and including its departure from the DRIVES'th non-notch
+     *  position it meets. */
+    private long passOpen(int j, long drives) {
+        if (drives == 0) {
+            return 0;
+        }
+        int[] prefix = _notchPrefix[j];
+        int size = _alphabet.size();
+        int open = size - prefix[size];
+        int start = _settings[j];
+        long full = (drives - 1) / open;
+        int target = (int) ((drives - 1) % open) + start - prefix[start];
+        int offset;
+        if (target < open) {
+            offset = _openPositions[j][target] - start;
+        } else {
+            offset = _openPositions[j][target - open] + size - start;
+        }
+        return full * size + offset + 1;
+    }
+
+    /** Record, for each slot, how many notches lie below each setting and
+     *  which settings are not notches, and determine whether seek() can
+     *  count its way forward. */
+    private void buildNotchTables() {
+        int size = _alphabet.size();
+        int slots = _myrotorslots.length;
+        _notchPrefix = new int[slots][size + 1];
+        _openPositions = new int[slots][];
+        _seekable = true;
+        for (int j = 0; j < slots; j += 1) {
+            Rotor rotor = _myrotorslots[j];
+            int[] prefix = _notchPrefix[j];
+            for (int posn = 0; posn < size; posn += 1) {
+                boolean notch = rotor.atNotch(posn);
+                prefix[posn + 1] = prefix[posn] + (notch ? 1 : 0);
+                if (notch && rotor.atNotch((posn + 1) % size)) {
+                    _seekable = false;
+                }
+            }
+            _openPositions[j] = new int[size - prefix[size]];
+            for (int posn = 0, k = 0; posn < size; posn += 1) {
+                if (!rotor.atNotch(posn)) {
+                    _openPositions[j][k] = posn;
+                    k += 1;
+                }
             }
         }
-        _myrotorslots.get(q).advance();
     }
 
-    /** Returns the private arraylist of rotorslots. */
+    /** Returns true if my slots hold a reflector followed by exactly
+     *  numPawls() rotating rotors; throws an EnigmaException otherwise. */
     Boolean checkRotorslots() {
         int cat = 0;
-        if (!_myrotorslots.get(0).reflecting()) {
+        if (!_myrotorslots[0].reflecting()) {
             throw new EnigmaException("The first shld be a reflector.");
         }
-        for (Rotor puppy : _myrotorslots) {
-            if (puppy.rotates()) {
+        for (int i = 0; i < _myrotorslots.length; i += 1) {
+            if (_rotates[i]) {
                 cat += 1;
             }
         }
@@ -113,49 +438,238 @@ class Machine {
         return true;
     }
 
-
-
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
+        if (_cycle != null) {
+            _cycleState = _cycle.next(_cycleState);
+            return _cycle.substitute(_cycleState, c);
+        }
         advanceMachine();
-        int a = _plugboard.permute(c);
-        int i = 1;
-        int intermediate = a;
-        while (i <= numRotors()) {
-            int use = numRotors() - i;
-            int b = _myrotorslots.get(use).convertForward(intermediate);
-            intermediate = b;
-            i += 1;
+        return substitute(c);
+    }
+
+    /** Returns the result of converting the input character C by my
+     *  rotors and plugboard in their current state, without advancing. */
+    int substitute(int c) {
+        syncSettings();
+        if (_generated != null) {
+            return _generated.substitute(c, _settings);
         }
-        int revertintermediate = intermediate;
-        int j = 1;
-        while (j < numRotors()) {
-            int d = _myrotorslots.get(j).convertBackward(revertintermediate);
-            revertintermediate = d;
-            j += 1;
+        int q = _myrotorslots.length - 1;
+        int n = _alphabet.size();
+        int p = _foldedPlugboard ? c : _plugboard.permute(c);
+        for (int i = q; i >= 0; i -= 1) {
+            int posn = _settings[i];
+            int[] table = _forwardTables[i];
+            if (table != null) {
+                p = table[posn * n + p];
+            } else {
+                p = _myrotorslots[i].convertForward(p, posn);
+            }
+        }
+        for (int i = 1; i <= q; i += 1) {
+            int posn = _settings[i];
+            int[] table = _backwardTables[i];
+            if (table != null) {
+                p = table[posn * n + p];
+            } else {
+                p = _myrotorslots[i].convertBackward(p, posn);
+            }
+        }
+        return _foldedPlugboard ? p : _plugboard.permute(p);
+    }
+
+    /** Convert characters using CYCLE, which must fit my current rotors,
+     *  plugboard and stationary settings (see CycleTable.fits), from now
+     *  until my rotors or plugboard are changed.  A null CYCLE returns to
+     *  converting rotor by rotor. */
+    void useCycleTable(CycleTable cycle) {
+        syncSettings();
+        _cycle = cycle;
+        if (cycle != null) {
+            _cycleState = cycle.encode(this);
+        }
+    }
+
+    /** Convert characters through PATH, which must have been generated
+     *  for my current rotors and plugboard (see GeneratedPath), from now
+     *  until they are changed.  A null PATH returns to converting through
+     *  my tables one slot at a time. */
+    void useGeneratedPath(GeneratedPath path) {
+        _generated = path;
+    }
+
+    /** Bring _settings up to date with my position in my cycle table, if
+     *  I am using one. */
+    private void syncSettings() {
+        if (_cycle != null) {
+            _cycle.decode(_cycleState, this);
         }
-        return _plugboard.permute(revertintermediate);
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        msg = msg.toUpperCase();
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < msg.length(); i += 1) {
-            if (Character.isWhitespace(msg.charAt(i))) {
-                continue;
-            } else {
-                int c = _alphabet.toInt(msg.charAt(i));
-                int r = convert(c);
-                result.append(_alphabet.toChar(r));
+        char[] chars = msg.toCharArray();
+        int len = convert(chars, 0, chars.length, chars, 0);
+        return new String(chars, 0, len);
+    }
+
+    /** Convert the LEN characters of SRC starting at OFF, skipping
+     *  whitespace and treating lower-case letters as upper case, and
+     *  store the results in DST starting at DSTOFF, updating the state of
+     *  the rotors accordingly.  Returns the number of characters stored.
+     *  SRC and DST may be the same array provided DSTOFF <= OFF. */
+    int convert(char[] src, int off, int len, char[] dst, int dstOff) {
+        int k = dstOff;
+        for (int i = off; i < off + len; i += 1) {
+            char ch = src[i];
+            if (!Character.isWhitespace(ch)) {
+                int c = _alphabet.toInt(Character.toUpperCase(ch));
+                dst[k] = _alphabet.toChar(convert(c));
+                k += 1;
             }
         }
-        return result.toString();
+        return k - dstOff;
     }
 
+    /** Convert characters as for convert(char[], int, int, char[], int),
+     *  dividing the LEN characters of SRC starting at OFF into chunks that
+     *  are converted concurrently in POOL by copies of this machine, each
+     *  first sought forward to the keystroke at which its chunk begins.
+     *  The results, and my state afterward, are the same as for a serial
+     *  conversion.  Converts serially when SRC and DST are the same array,
+     *  when the message fits in one chunk, when my rotors cannot be sought
+     *  quickly, or when SRC contains a character outside my alphabet (so
+     *  that the error is reported at the right point). */
+    int convert(char[] src, int off, int len, char[] dst, int dstOff,
+                ForkJoinPool pool) {
+        int chunks = (len + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        if (src == dst || chunks < 2 || !_seekable
+            || pool.getParallelism() < 2) {
+            return convert(src, off, len, dst, dstOff);
+        }
+        int[] counts = new int[chunks + 1];
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(k -> {
+            int start = off + k * PARALLEL_CHUNK;
+            int end = Math.min(off + len, start + PARALLEL_CHUNK);
+            counts[k + 1] = countConvertible(src, start, end);
+        })).join();
+        for (int k = 0; k < chunks; k += 1) {
+            if (counts[k + 1] < 0) {
+                return convert(src, off, len, dst, dstOff);
+            }
+            counts[k + 1] += counts[k];
+        }
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(k -> {
+            int start = off + k * PARALLEL_CHUNK;
+            int end = Math.min(off + len, start + PARALLEL_CHUNK);
+            Machine worker = new Machine(this);
+            worker.seek(counts[k]);
+            worker.convert(src, start, end - start, dst, dstOff + counts[k]);
+        })).join();
+        seek(counts[chunks]);
+        return counts[chunks];
+    }
+
+    /** Return the number of non-whitespace characters in SRC from START
+     *  up to END, or -1 if some character is not in my alphabet. */
+    private int countConvertible(char[] src, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i += 1) {
+            char ch = src[i];
+            if (!Character.isWhitespace(ch)) {
+                if (!_alphabet.contains(Character.toUpperCase(ch))) {
+                    return -1;
+                }
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Convert characters from SRC into DST as for convert(char[], int,
+     *  int, char[], int), until SRC is exhausted or DST is full.  Returns
+     *  the number of characters put into DST. */
+    int convert(CharBuffer src, CharBuffer dst) {
+        int k = 0;
+        while (src.hasRemaining() && dst.hasRemaining()) {
+            char ch = src.get();
+            if (!Character.isWhitespace(ch)) {
+                int c = _alphabet.toInt(Character.toUpperCase(ch));
+                dst.put(_alphabet.toChar(convert(c)));
+                k += 1;
+            }
+        }
+        return k;
+    }
+
+    /** Convert the LEN bytes of BUF starting at OFF in place, taking
+     *  byte B as character number B & 0xFF of my alphabet, which must
+     *  have ByteAlphabet.SIZE characters.  Unlike the character
+     *  conversions, every byte is converted, whitespace included. */
+    void convert(byte[] buf, int off, int len) {
+        if (_alphabet.size() != ByteAlphabet.SIZE) {
+            throw new EnigmaException("Binary data needs a byte alphabet.");
+        }
+        int q = _myrotorslots.length - 1;
+        if (_cycle != null || !_foldedPlugboard || q < 1) {
+            for (int i = off; i < off + len; i += 1) {
+                buf[i] = (byte) convert(ByteAlphabet.toInt(buf[i]));
+            }
+            return;
+        }
+        int n = ByteAlphabet.SIZE;
+        int[][] forward = _forwardTables, backward = _backwardTables;
+        int[] settings = _settings;
+        int i = off, end = off + len;
+        while (i < end) {
+            int run = Math.min(quietSteps(), end - i);
+            for (int stop = i + Math.max(run, 1); i < stop; i += 1) {
+                if (run == 0) {
+                    advanceMachine();
+                } else {
+                    int posn = settings[q] + 1;
+                    settings[q] = posn == n ? 0 : posn;
+                }
+                int p = buf[i] & 0xFF;
+                for (int k = q; k >= 0; k -= 1) {
+                    p = forward[k][settings[k] * n + p];
+                }
+                for (int k = 1; k <= q; k += 1) {
+                    p = backward[k][settings[k] * n + p];
+                }
+                buf[i] = (byte) p;
+            }
+        }
+    }
+
+    /** Return the number of keystrokes, starting with the next, at which
+     *  only the rightmost rotor will move, or Integer.MAX_VALUE if that
+     *  is all that ever moves from my current settings.  This is 0 if the
+     *  rotor in some slot I > 0 is at a notch, and otherwise the distance
+     *  of the rightmost rotor from its next notch. */
+    private int quietSteps() {
+        int q = _myrotorslots.length - 1;
+        for (int i = 1; i < q; i += 1) {
+            if (_myrotorslots[i].atNotch(_settings[i])) {
+                return 0;
+            }
+        }
+        int posn = _settings[q];
+        int notch = _myrotorslots[q].nextNotch(posn);
+        if (notch == -1) {
+            return Integer.MAX_VALUE;
+        }
+        return notch >= posn ? notch - posn : notch + _alphabet.size() - posn;
+    }
+
+    /** Number of characters of a message converted by each task of a
+     *  parallel conversion. */
+    static final int PARALLEL_CHUNK = 1 << 16;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
     /** Number of rotors the machine has. */
@@ -164,12 +678,43 @@ class Machine {
     private int _pawls;
     /** A mapping of rotor's name to rotor itself. */
     private HashMap<String, Rotor> _allrotors = new HashMap<>();
-    /** A collection of rotorslots. */
-    private ArrayList<Rotor> _myrotorslots;
+    /** The rotors in my slots, leftmost (the reflector) first.  The
+     *  same rotor may appear in several slots, so the rotors themselves
+     *  are never moved: each slot's setting is kept in _settings. */
+    private Rotor[] _myrotorslots;
+    /** The current setting of the rotor in each slot. */
+    private int[] _settings;
+    /** Whether the rotor in each slot has a pawl and can rotate. */
+    private boolean[] _rotates;
     /** The permutation of plugboard.
      * if not set, the default is every char
      * mapping to itself. */
     private Permutation _plugboard;
     /** A collection of rotors. */
     private Collection<Rotor> _allr;
+    /** Forward conversion tables of the rotors in my slots, indexed by
+     *  slot, with the plugboard folded into the rightmost slot's table. */
+    private int[][] _forwardTables;
+    /** Backward conversion tables of the rotors in my slots, laid out
+     *  as for _forwardTables. */
+    private int[][] _backwardTables;
+    /** True iff _plugboard has been folded into the rightmost tables. */
+    private boolean _foldedPlugboard;
+    /** For each slot, the number of notches of its rotor at settings
+     *  below each setting from 0 to the alphabet size. */
+    private int[][] _notchPrefix;
+    /** For each slot, the settings of its rotor that are not notches,
+     *  in increasing order. */
+    private int[][] _openPositions;
+    /** True iff no rotor in my slots has notches at adjacent settings. */
+    private boolean _seekable;
+    /** The cycle table I am converting with, or null.  While it is in
+     *  use, my position is _cycleState and the settings of my moving
+     *  slots in _settings may be out of date. */
+    private CycleTable _cycle;
+    /** My state in _cycle. */
+    private int _cycleState;
+    /** The substitution path generated for my rotors and plugboard, or
+     *  null to convert through my tables one slot at a time. */
+    private GeneratedPath _generated;
 }
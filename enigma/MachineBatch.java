@@ -0,0 +1,241 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A batch of machines with the same rotors in the same slots and the
+ *  same plugboard, differing only in their rotor settings, which are
+ *  converted in lockstep: each keystroke is applied to every machine
+ *  before the next.  Rather than a Machine apiece, the batch keeps one
+ *  array of settings per slot, indexed by machine, and shares the
+ *  conversion tables and a table of notch positions per slot, so a
+ *  machine costs one int per slot.  Each slot's table is applied to all
+ *  the machines in one loop, whose loads do not wait on each other as
+ *  the loads of one machine's conversion do.
+ *  @author nishuang
+ */
+class MachineBatch {
+
+    /** A batch of SIZE machines, each a copy of TEMPLATE, whose rotors
+     *  must have been inserted and whose alphabet must be small enough
+     *  to tabulate (see Rotor.MAX_TABLE_SIZE). */
+    MachineBatch(Machine template, int size) {
+        Machine M = new Machine(template);
+        M.useCycleTable(null);
+        _alphabet = M.alphabet();
+        _n = _alphabet.size();
+        _q = M.numRotors() - 1;
+        if (_q < 1) {
+            throw error("a batch needs a reflector and another rotor");
+        }
+        _forward = new int[_q + 1][];
+        _backward = new int[_q + 1][];
+        _notches = new boolean[_q + 1][_n];
+        _rotates = new boolean[_q + 1];
+        _settings = new int[_q + 1][size];
+        for (int i = 0; i <= _q; i += 1) {
+            _forward[i] = M.slotForwardTable(i);
+            _backward[i] = M.slotBackwardTable(i);
+            if (_forward[i] == null) {
+                throw error("alphabet too large for a machine batch");
+            }
+            for (int posn = 0; posn < _n; posn += 1) {
+                _notches[i][posn] = M.slot(i).atNotch(posn);
+            }
+            _rotates[i] = M.slotMoves(i);
+            Arrays.fill(_settings[i], M.slotSetting(i));
+        }
+        _size = size;
+    }
+
+    /** Return the number of machines in the batch. */
+    int size() {
+        return _size;
+    }
+
+    /** Set the rotors of machine M as for Machine.setRotors(SETTING). */
+    void setRotors(int m, String setting) {
+        if (setting.length() != _q) {
+            throw new EnigmaException("Wrong length of initial setting.");
+        }
+        for (int i = 0; i < _q; i += 1) {
+            _settings[i + 1][m] = _alphabet.toInt(setting.charAt(i));
+        }
+    }
+
+    /** Return the settings of the rotors of machine M, in the form
+     *  accepted by setRotors. */
+    String rotorSettings(int m) {
+        char[] result = new char[_q];
+        for (int i = 0; i < _q; i += 1) {
+            result[i] = _alphabet.toChar(_settings[i + 1][m]);
+        }
+        return new String(result);
+    }
+
+    /** Strike one key on every machine: convert character index IN[M]
+     *  with machine M, after advancing it, into OUT[M], for each M.  IN
+     *  and OUT may be the same array. */
+    void convert(int[] in, int[] out) {
+        if (in != out) {
+            System.arraycopy(in, 0, out, 0, _size);
+        }
+        strike(_settings, out, _size);
+    }
+
+    /** Return the conversions of MESSAGES, converting MESSAGES[M] with
+     *  machine M as Machine.convert(String) would, one keystroke of every
+     *  unfinished message at a time. */
+    String[] convert(String[] messages) {
+        if (messages.length != _size) {
+            throw error("expected %d messages, not %d", _size,
+                        messages.length);
+        }
+        int[][] text = new int[_size][];
+        Integer[] byLength = new Integer[_size];
+        for (int m = 0; m < _size; m += 1) {
+            text[m] = indices(messages[m]);
+            byLength[m] = m;
+        }
+        Arrays.sort(byLength, (a, b) -> text[b].length - text[a].length);
+        int[] order = new int[_size];
+        int[][] settings = new int[_q + 1][_size];
+        for (int j = 0; j < _size; j += 1) {
+            order[j] = byLength[j];
+            for (int i = 0; i <= _q; i += 1) {
+                settings[i][j] = _settings[i][order[j]];
+            }
+        }
+        int[] column = new int[_size];
+        int active = _size;
+        for (int k = 0; active > 0; k += 1) {
+            while (active > 0 && text[order[active - 1]].length <= k) {
+                active -= 1;
+            }
+            for (int j = 0; j < active; j += 1) {
+                column[j] = text[order[j]][k];
+            }
+            strike(settings, column, active);
+            for (int j = 0; j < active; j += 1) {
+                text[order[j]][k] = column[j];
+            }
+        }
+        String[] result = new String[_size];
+        for (int j = 0; j < _size; j += 1) {
+            int m = order[j];
+            for (int i = 0; i <= _q; i += 1) {
+                _settings[i][m] = settings[i][j];
+            }
+            char[] chars = new char[text[m].length];
+            for (int k = 0; k < chars.length; k += 1) {
+                chars[k] = _alphabet.toChar(text[m][k]);
+            }
+            result[m] = new String(chars);
+        }
+        return result;
+    }
+
+    /** Return the indices of the characters of MESSAGE, skipping
+     *  whitespace and treating lower-case letters as upper case. */
+    private int[] indices(String message) {
+        int[] result = new int[message.length()];
+        int len = 0;
+        for (int i = 0; i < message.length(); i += 1) {
+            char ch = message.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                result[len] = _alphabet.toInt(Character.toUpperCase(ch));
+                len += 1;
+            }
+        }
+        return Arrays.copyOf(result, len);
+    }
+
+    /** Strike one key on each of the first ACTIVE machines whose slot
+     *  settings are SETTINGS[I][J] for machine J, replacing character
+     *  index CHARS[J] by machine J's conversion of it.  All the machines
+     *  advance first; then each slot's table converts every machine's
+     *  character in turn, so that the loads for different machines are
+     *  independent of each other. */
+    private void strike(int[][] settings, int[] chars, int active) {
+        int q = _q, n = _n;
+        int[] rightmost = settings[q];
+        for (int j = 0; j < active; j += 1) {
+            if (atNotch(settings, j)) {
+                advance(settings, j);
+            } else {
+                int posn = rightmost[j] + 1;
+                rightmost[j] = posn == n ? 0 : posn;
+            }
+        }
+        for (int i = q; i >= 0; i -= 1) {
+            int[] table = _forward[i], setting = settings[i];
+            for (int j = 0; j < active; j += 1) {
+                chars[j] = table[setting[j] * n + chars[j]];
+            }
+        }
+        for (int i = 1; i <= q; i += 1) {
+            int[] table = _backward[i], setting = settings[i];
+            for (int j = 0; j < active; j += 1) {
+                chars[j] = table[setting[j] * n + chars[j]];
+            }
+        }
+    }
+
+    /** Return true iff some rotor but the reflector of machine J is at a
+     *  notch, according to SETTINGS as for strike.  Otherwise, only
+     *  the rightmost rotor moves at the next keystroke. */
+    private boolean atNotch(int[][] settings, int j) {
+        for (int i = 1; i <= _q; i += 1) {
+            if (_notches[i][settings[i][j]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Advance machine J, according to SETTINGS as for strike.  As in
+     *  Machine.advanceMachine, a slot steps if it is the rightmost, if
+     *  the rotor to its right is at a notch, or if it is itself at a
+     *  notch and the rotor to its left rotates. */
+    private void advance(int[][] settings, int j) {
+        boolean here = false;
+        for (int i = 0; i <= _q; i += 1) {
+            boolean right = i < _q && _notches[i + 1][settings[i + 1][j]];
+            if (i == _q || (right && _rotates[i])
+                || (here && _rotates[i - 1])) {
+                int posn = settings[i][j] + 1;
+                settings[i][j] = posn == _n ? 0 : posn;
+            }
+            here = right;
+        }
+    }
+
+    /** Common alphabet of the machines. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _n;
+
+    /** Index of the rightmost slot. */
+    private final int _q;
+
+    /** Number of machines. */
+    private final int _size;
+
+    /** Forward and backward conversion tables of each slot, as from
+     *  Machine.slotForwardTable and slotBackwardTable. */
+    private final int[][] _forward, _backward;
+
+    /** _notches[I][P] is true iff the rotor in slot I has a notch at
+     *  setting P. */
+    private final boolean[][] _notches;
+
+    /** Whether the rotor in each slot rotates (for the rightmost slot,
+     *  always true). */
+    private final boolean[] _rotates;
+
+    /** _settings[I][M] is the setting of slot I of machine M. */
+    private final int[][] _settings;
+
+}
@@ -0,0 +1,95 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineBatch class.
+ *  @Shuang
+ */
+public class MachineBatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a machine with reflector B, fixed rotor Beta and moving
+     *  rotors III, IV and I inserted, and plugboard PLUGBOARD. */
+    private static Machine machine(String plugboard) {
+        Collection<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                                                          UPPER), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(NAVALA.get("IV"),
+                                                         UPPER), "J"));
+        Machine M = new Machine(UPPER, 5, 3, rotors);
+        M.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        M.setPlugboard(new Permutation(plugboard, UPPER));
+        return M;
+    }
+
+    @Test
+    public void checkMatchesSeparateMachines() {
+        Machine template = machine("(YF) (ZH)");
+        Random random = new Random(20);
+        int size = 40;
+        MachineBatch batch = new MachineBatch(template, size);
+        String[] messages = new String[size];
+        String[] expected = new String[size];
+        for (int m = 0; m < size; m += 1) {
+            char[] setting = new char[4];
+            for (int i = 0; i < setting.length; i += 1) {
+                setting[i] = UPPER_STRING.charAt(random.nextInt(26));
+            }
+            if (m == 0) {
+                setting = "AAIQ".toCharArray();
+            }
+            char[] message = new char[random.nextInt(700)];
+            for (int k = 0; k < message.length; k += 1) {
+                message[k] = k % 7 == 6 ? ' '
+                    : UPPER_STRING.charAt(random.nextInt(26));
+            }
+            messages[m] = new String(message);
+            batch.setRotors(m, new String(setting));
+            Machine M = new Machine(template);
+            M.setRotors(new String(setting));
+            expected[m] = M.convert(messages[m]);
+            assertEquals(new String(setting), batch.rotorSettings(m));
+        }
+        String[] converted = batch.convert(messages);
+        for (int m = 0; m < size; m += 1) {
+            assertEquals(msg("batch", "machine %d", m), expected[m],
+                         converted[m]);
+        }
+    }
+
+    @Test
+    public void checkKeystroke() {
+        Machine template = machine("");
+        template.setRotors("AAIQ");
+        MachineBatch batch = new MachineBatch(template, 2);
+        Machine M = new Machine(template);
+        int[] chars = {0, 0};
+        for (int k = 0; k < 3; k += 1) {
+            int expected = M.convert(0);
+            batch.convert(chars, chars);
+            assertEquals(expected, chars[0]);
+            assertEquals(expected, chars[1]);
+            chars[0] = chars[1] = 0;
+        }
+        assertEquals("ABKT", batch.rotorSettings(1));
+    }
+
+}
@@ -4,10 +4,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /** The suite of all JUnit tests for the Machine class.
  *  @Shuang
@@ -88,5 +98,264 @@ public class MachineTest {
         assertEquals(expected, converted);
     }
 
+    @Test
+    public void checkdoublestep() {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine test = new Machine(_upper, 5, 3, allrotors);
+        test.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        test.setRotors("AAIQ");
+        test.advanceMachine();
+        assertEquals("AAJR", test.rotorSettings());
+        test.advanceMachine();
+        assertEquals("ABKS", test.rotorSettings());
+        test.advanceMachine();
+        assertEquals("ABKT", test.rotorSettings());
+    }
+
+    @Test
+    public void checkcountsteps() {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine test = new Machine(_upper, 5, 3, allrotors);
+        test.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        test.setRotors("AAIQ");
+        long[] steps = new long[5];
+        assertEquals(1, test.countSteps(3, steps));
+        assertArrayEquals(new long[] {0, 0, 1, 2, 3}, steps);
+        assertEquals("ABKT", test.rotorSettings());
+    }
+
+    @Test
+    public void checkbulkconvert() {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine test = new Machine(_upper, 5, 3, allrotors);
+        test.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        test.setRotors("AXLE");
+        test.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", _upper));
+        char[] src = "##From his\tshoulder##".toCharArray();
+        char[] dst = new char[20];
+        int n = test.convert(src, 2, src.length - 4, dst, 1);
+        assertEquals("QVPQSOKOILPUBKJ", new String(dst, 1, n));
+        CharBuffer in = CharBuffer.wrap("hiawatha took");
+        CharBuffer out = CharBuffer.allocate(5);
+        assertEquals(5, test.convert(in, out));
+        assertEquals("ZPISF", new String(out.array()));
+        out.clear();
+        assertEquals(5, test.convert(in, out));
+        assertEquals("XDWBH", new String(out.array()));
+    }
+
+    @Test
+    public void checkseek() {
+        Random random = new Random(61);
+        Permutation identity = new Permutation("", _upper);
+        for (int trial = 0; trial < 300; trial += 1) {
+            int numRotors = 2 + random.nextInt(6);
+            Collection<Rotor> rotors = new ArrayList<>();
+            String[] names = new String[numRotors];
+            names[0] = "R";
+            rotors.add(new Reflector("R", perm5));
+            int pawls = 0;
+            for (int i = 1; i < numRotors; i += 1) {
+                names[i] = "S" + i;
+                if (random.nextInt(5) == 0) {
+                    rotors.add(new FixedRotor(names[i], identity));
+                    continue;
+                }
+                String notches = "";
+                for (int k = random.nextInt(4); k > 0; k -= 1) {
+                    notches += (char) ('A' + random.nextInt(26));
+                }
+                rotors.add(new MovingRotor(names[i], identity, notches));
+                pawls += 1;
+            }
+            String setting = "";
+            for (int i = 1; i < numRotors; i += 1) {
+                setting += (char) ('A' + random.nextInt(26));
+            }
+            int steps = random.nextInt(3000);
+            Machine stepped = new Machine(_upper, numRotors, pawls, rotors);
+            stepped.insertRotors(names);
+            stepped.setRotors(setting);
+            for (int k = 0; k < steps; k += 1) {
+                stepped.advanceMachine();
+            }
+            Machine sought = new Machine(_upper, numRotors, pawls, rotors);
+            sought.insertRotors(names);
+            sought.setRotors(setting);
+            sought.seek(steps);
+            assertEquals("seek " + steps + " from " + setting,
+                         stepped.rotorSettings(), sought.rotorSettings());
+        }
+    }
+
+    @Test
+    public void checkparallelconvert() {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Random random = new Random(61);
+        char[] msg = new char[5 * Machine.PARALLEL_CHUNK + 17];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = random.nextInt(7) == 0 ? ' '
+                : (char) ('a' + random.nextInt(26));
+        }
+        Machine serial = new Machine(_upper, 5, 3, allrotors);
+        serial.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        serial.setRotors("AXLE");
+        serial.setPlugboard(new Permutation("(HQ) (EX) (IP)", _upper));
+        Machine parallel = new Machine(serial);
+        char[] expected = new char[msg.length];
+        char[] actual = new char[msg.length];
+        int n = serial.convert(msg, 3, msg.length - 3, expected, 0);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(n, parallel.convert(msg, 3, msg.length - 3,
+                                             actual, 0, pool));
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals(expected, actual);
+        assertEquals(serial.rotorSettings(), parallel.rotorSettings());
+    }
+
+    @Test
+    public void checkcycletable() {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine plain = new Machine(_upper, 5, 3, allrotors);
+        plain.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        plain.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR)", _upper));
+        plain.setRotors("AXLE");
+        Machine tabled = new Machine(plain);
+        CycleTable table = CycleTable.of(tabled);
+        tabled.useCycleTable(table);
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        for (String start : new String[] {"AXLE", "AAIQ", "AZZZ", "AAJR"}) {
+            plain.setRotors(start);
+            tabled.setRotors(start);
+            for (int k = 0; k < 400; k += 1) {
+                assertEquals(plain.convert(msg), tabled.convert(msg));
+            }
+            assertEquals(plain.rotorSettings(), tabled.rotorSettings());
+        }
+        assertTrue(table.fits(tabled));
+        tabled.setRotors("BXLE");
+        assertFalse(table.fits(tabled));
+        plain.setRotors("BXLE");
+        assertEquals(plain.convert(msg), tabled.convert(msg));
+    }
+
+    @Test
+    public void checkgeneratedpath() {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine plain = new Machine(_upper, 5, 3, allrotors);
+        plain.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        plain.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR)", _upper));
+        plain.setRotors("AXLE");
+        Machine generated = new Machine(plain);
+        GeneratedPath path = GeneratedPath.of(generated);
+        assertNotNull(path);
+        assertTrue(path.getClass().isHidden());
+        generated.useGeneratedPath(path);
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        for (String start : new String[] {"AXLE", "AAIQ", "AZZZ", "BAJR"}) {
+            plain.setRotors(start);
+            generated.setRotors(start);
+            for (int k = 0; k < 400; k += 1) {
+                assertEquals(plain.convert(msg), generated.convert(msg));
+            }
+            assertEquals(plain.rotorSettings(), generated.rotorSettings());
+        }
+        Permutation plugboard = new Permutation("(AB)", _upper);
+        plain.setPlugboard(plugboard);
+        generated.setPlugboard(plugboard);
+        assertEquals(plain.convert(msg), generated.convert(msg));
+    }
+
+    @Test
+    public void checksharedrotors() throws Exception {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine made = new Machine(_upper, 5, 3, allrotors);
+        made.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        String[] starts = {"AXLE", "AAIQ", "ZZZZ", "MQVJ"};
+        String[] expected = new String[starts.length];
+        for (int k = 0; k < starts.length; k += 1) {
+            Machine m = new Machine(made);
+            m.setRotors(starts[k]);
+            expected[k] = m.convert(msg);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 50; round += 1) {
+                String[] converted = pool.submit(
+                    () -> Arrays.stream(starts).parallel()
+                    .map(start -> {
+                        Machine m = new Machine(made);
+                        m.setRotors(start);
+                        return m.convert(msg);
+                    }).toArray(String[]::new)).get();
+                assertArrayEquals(expected, converted);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("AAAA", made.rotorSettings());
+    }
+
+    @Test
+    public void checksnapshot() throws IOException {
+        allrotors.add(_i);
+        allrotors.add(_iii);
+        allrotors.add(_iv);
+        allrotors.add(_beta);
+        allrotors.add(_b);
+        Machine made = new Machine(_upper, 5, 3, allrotors);
+        File file = File.createTempFile("enigma", ".snap");
+        try {
+            Snapshot.write(made, file.getPath());
+            assertTrue(Snapshot.isSnapshot(file.getPath()));
+            Machine loaded = Snapshot.read(file.getPath());
+            assertEquals(5, loaded.numRotors());
+            assertEquals(3, loaded.numPawls());
+            String plug = "(HQ) (EX) (IP) (TR) (BY)";
+            for (Machine m : new Machine[] { made, loaded }) {
+                m.insertRotors(new String[] { "B", "BETA", "III", "IV", "I" });
+                m.setRotors("AXLE");
+                m.setPlugboard(new Permutation(plug, m.alphabet()));
+            }
+            assertTrue(loaded.slot(0).reflecting());
+            assertFalse(loaded.slot(1).rotates());
+            String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+            assertEquals(made.convert(msg), loaded.convert(msg));
+        } finally {
+            file.delete();
+        }
+    }
 
 }
@@ -1,12 +1,23 @@
 package enigma;
 
-import java.io.File;
+import java.io.CharArrayWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 import static enigma.EnigmaException.*;
@@ -18,18 +29,68 @@ public final class Main {
 
     /**
      * Process a sequence of encryptions and decryptions, as
-     * specified by ARGS, where 1 <= ARGS.length <= 3.
-     * ARGS[0] is the name of a configuration file.
-     * ARGS[1] is optional; when present, it names an input file
-     * containing messages.  Otherwise, input comes from the standard
-     * input.  ARGS[2] is optional; when present, it names an output
+     * specified by ARGS, which consist of options followed by 1 to 3
+     * file names.
+     * The option "--threads N" converts the sections of the input that
+     * follow different settings lines concurrently on N threads, and
+     * splits very long message lines among them.  The option
+     * "--cycle-tables" tabulates the substitutions of every state of
+     * the moving rotors, which pays off when many settings lines share
+     * their rotors, plugboard and stationary rotor settings.  The option
+     * "--settings-cache N" keeps the machines configured by the N most
+     * recently used settings lines (by default, DEFAULT_SETTINGS_CACHE).
+     * The option "--generate" converts through a class generated for
+     * the rotors and plugboard of each frequently used configuration
+     * (see GeneratedPath), where the runtime allows it.
+     * The option "--stats" prints statistics about the conversions
+     * (see Stats) to the standard error on exit.  Loading the
+     * configuration, setting up each settings line and converting each
+     * message line are also recorded as JDK Flight Recorder events (see
+     * Events) when a recording enables them.
+     * The first file name is that of a configuration file, either in
+     * text form or compiled by "compile CONFIG SNAPSHOT", which writes
+     * the configuration file CONFIG to SNAPSHOT in binary form instead
+     * of processing messages.  "bombe CONFIG CIPHERTEXT CRIB [OFFSET]"
+     * instead prints the stops of a Bombe search for CRIB at OFFSET
+     * (by default 0) in CIPHERTEXT, one settings line per stop, and
+     * "attack CONFIG CIPHERTEXT NGRAMS [RESTARTS]" prints the settings
+     * line of the best decryption of CIPHERTEXT found by a
+     * ciphertext-only attack scored by the n-gram counts in the file
+     * NGRAMS, climbing from RESTARTS (by default 16) starting positions.
+     * "serve CONFIG WHERE" runs a Server for CONFIG listening on WHERE,
+     * a TCP port on the loopback interface or "unix:PATH".
+     * "binary CONFIG SETTINGS INPUT [OUTPUT]" converts the file INPUT
+     * byte for byte into OUTPUT (by default, INPUT itself) with a
+     * machine set up by the settings line SETTINGS, whose alphabet must
+     * have 256 characters (see BinaryFiles).
+     * The second is optional; when present, it names an input file
+     * containing messages.  Message lines longer than LINE_LIMIT
+     * characters are converted a piece at a time as they are read, so
+     * memory use does not depend on line length; since the start of
+     * such a line is written before its end is read, a '*' after its
+     * first LINE_LIMIT characters is an error rather than a reason to
+     * skip the line, and settings lines may be no longer than
+     * LINE_LIMIT.  Otherwise, input comes from the standard
+     * input.  The third is optional; when present, it names an output
      * file for processed messages.  Otherwise, output goes to the
      * standard output. Exits normally if there are no errors in the input;
      * otherwise with code 1.
      */
     public static void main(String... args) {
         try {
-            new Main(args).process();
+            if (args.length > 0 && args[0].equals("compile")) {
+                compile(args);
+            } else if (args.length > 0 && args[0].equals("bombe")) {
+                bombe(args);
+            } else if (args.length > 0 && args[0].equals("attack")) {
+                attack(args);
+            } else if (args.length > 0 && args[0].equals("serve")) {
+                serve(args);
+            } else if (args.length > 0 && args[0].equals("binary")) {
+                binary(args);
+            } else {
+                new Main(args).process();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -37,47 +98,206 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Write the configuration file named by ARGS[1] to the file named
+     *  ARGS[2] as a compiled snapshot. */
+    private static void compile(String[] args) {
+        if (args.length != 3) {
+            throw error("usage: compile CONFIG SNAPSHOT");
+        }
+        Main main = new Main(new String[] { args[1] });
+        Snapshot.write(main.readConfig(), args[2]);
+    }
+
+    /** Print the stops of the Bombe search described by ARGS (see the
+     *  comment on main). */
+    private static void bombe(String[] args) {
+        if (args.length != 4 && args.length != 5) {
+            throw error("usage: bombe CONFIG CIPHERTEXT CRIB [OFFSET]");
+        }
+        int offset = 0;
+        if (args.length == 5) {
+            try {
+                offset = Integer.parseInt(args[4]);
+            } catch (NumberFormatException excp) {
+                throw error("bad crib offset %s", args[4]);
+            }
+        }
+        Main main = new Main(new String[] { args[1] });
+        Bombe bombe = new Bombe(main.loadConfig(), args[2], args[3], offset);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            for (String stop : bombe.search(pool)) {
+                System.out.println(stop);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Print the result of the ciphertext-only attack described by ARGS
+     *  (see the comment on main). */
+    private static void attack(String[] args) {
+        if (args.length != 4 && args.length != 5) {
+            throw error("usage: attack CONFIG CIPHERTEXT NGRAMS [RESTARTS]");
+        }
+        int restarts = args.length == 5 ? parseCount(args[4]) : 16;
+        Main main = new Main(new String[] { args[1] });
+        Machine made = main.loadConfig();
+        Attack attack = new Attack(made, args[2],
+                                   NgramTable.read(args[3], made.alphabet()));
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            System.out.println(attack.search(pool, restarts).get(0));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Convert the binary file described by ARGS (see the comment on
+     *  main). */
+    private static void binary(String[] args) {
+        if (args.length != 4 && args.length != 5) {
+            throw error("usage: binary CONFIG SETTINGS INPUT [OUTPUT]");
+        }
+        Main main = new Main(new String[] { args[1] });
+        Machine M = new Machine(main.loadConfig());
+        if (!isSettings(args[2])) {
+            throw new EnigmaException("Setting line invalid.");
+        }
+        main.setUp(M, args[2].trim());
+        BinaryFiles.convert(M, args[3], args.length == 5 ? args[4] : null);
+    }
+
+    /** Run the server described by ARGS (see the comment on main) until
+     *  the process is killed. */
+    private static void serve(String[] args) {
+        if (args.length != 3) {
+            throw error("usage: serve CONFIG WHERE");
+        }
+        Main main = new Main(new String[] { args[1] });
+        Machine made = main.loadConfig();
+        try (Server server = new Server(made, Server.open(args[2]))) {
+            System.out.printf("listening on %s%n", server.address());
+            System.out.flush();
+            server.serve();
+        }
+    }
+
     /**
      * Check ARGS and open the necessary files (see comment on main).
      */
     Main(String[] args) {
+        int first = 0;
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--threads") && first + 1 < args.length) {
+                _threads = parseCount(args[first + 1]);
+                first += 2;
+            } else if (args[first].equals("--cycle-tables")) {
+                _cycleTables = new LinkedHashMap<>(16, 0.75f, true);
+                first += 1;
+            } else if (args[first].equals("--settings-cache")
+                       && first + 1 < args.length) {
+                _settingsCache =
+                    new SettingsCache(parseCount(args[first + 1]));
+                first += 2;
+            } else if (args[first].equals("--generate")) {
+                _generatedPaths = new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                        Map.Entry<String, GeneratedPath> eldest) {
+                        return size() > MAX_GENERATED_PATHS;
+                    }
+                };
+                first += 1;
+            } else if (args[first].equals("--stats")) {
+                _stats = new Stats();
+                first += 1;
+            } else {
+                throw error("unknown option %s", args[first]);
+            }
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        if (Snapshot.isSnapshot(args[0])) {
+            _snapshot = args[0];
+        } else {
+            _configName = args[0];
+            _config = getInput(args[0]);
+        }
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = getReader(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new LineReader(new InputStreamReader(System.in),
+                                    BUFFER_SIZE, LINE_LIMIT);
         }
 
         if (args.length > 2) {
             _output = getOutput(args[2]);
         } else {
-            _output = System.out;
+            _output = new OutputStreamWriter(System.out);
+        }
+        _formatter = new GroupFormatter(_output, BUFFER_SIZE);
+        _line = new char[BUFFER_SIZE];
+    }
+
+    /** A Main that converts the messages on INPUT to OUTPUT, caching
+     *  configured machines in SETTINGSCACHE, for use with process(Machine)
+     *  once a configuration has been loaded elsewhere. */
+    Main(Reader input, Writer output, SettingsCache settingsCache) {
+        _input = new LineReader(input, SESSION_BUFFER_SIZE, LINE_LIMIT);
+        _output = output;
+        _settingsCache = settingsCache;
+        _formatter = new GroupFormatter(_output, SESSION_BUFFER_SIZE);
+        _line = new char[SESSION_BUFFER_SIZE];
+    }
+
+    /** Return the positive count denoted by ARG. */
+    private static int parseCount(String arg) {
+        try {
+            int count = Integer.parseInt(arg);
+            if (count > 0) {
+                return count;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
         }
+        throw error("expected a positive count, not %s", arg);
     }
 
     /**
-     * Return a Scanner reading from the file named NAME.
+     * Return a reader reading from the file named NAME.
      */
-    private Scanner getInput(String name) {
+    private Reader getInput(String name) {
         try {
-            return new Scanner(new File(name));
+            return new InputStreamReader(new FileInputStream(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
     /**
-     * Return a PrintStream writing to the file named NAME.
+     * Return a line reader reading from the file named NAME.
      */
-    private PrintStream getOutput(String name) {
+    private LineReader getReader(String name) {
         try {
-            File out = new File(name);
-            return new PrintStream(out);
+            return new LineReader(
+                new InputStreamReader(new FileInputStream(name)),
+                BUFFER_SIZE, LINE_LIMIT);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /**
+     * Return a writer writing to the file named NAME.
+     */
+    private Writer getOutput(String name) {
+        try {
+            return new OutputStreamWriter(new FileOutputStream(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -86,114 +306,519 @@ public final class Main {
     /**
      * Configure an Enigma machine from the contents of configuration
      * file _config and apply it to the messages in _input, sending the
-     * results to _output.
+     * results to _output.  Lines consisting only of whitespace are held
+     * back until the next non-blank line shows whether they precede a
+     * settings line (where only empty lines are echoed) or a message
+     * line (where each becomes an empty output line).
      */
-    private void process() {
-        Machine made = readConfig();
-        while (_input.hasNextLine()) {
-            if (!_input.hasNext("[*]")) {
-                throw new EnigmaException("Setting line invalid.");
-            } else {
-                String put = _input.nextLine();
-                if (put.contains("*")) {
-                    setUp(made, put);
-                } else if (put.length() == 0) {
-                    _output.println();
-                }
-                while (!_input.hasNext("[*]") && _input.hasNextLine()) {
-                    String s = _input.nextLine();
-                    if (!s.contains("*")) {
-                        printMessageLine(made.convert(s));
+    void process() {
+        try {
+            process(loadConfig());
+        } finally {
+            if (_stats != null) {
+                _stats.print(System.err, _settingsCache);
+            }
+        }
+    }
+
+    /** Do the work of process() with copies of the unconfigured machine
+     *  MADE.  Output is flushed whenever no more input is ready, so that
+     *  an interactive source sees each line's conversion promptly. */
+    void process(Machine made) {
+        _alphabet = made.alphabet();
+        if (_threads > 1) {
+            _pool = new ForkJoinPool(_threads);
+            try {
+                processConcurrently(made);
+            } finally {
+                _pool.shutdownNow();
+            }
+            return;
+        }
+        Stats.Section section = null;
+        try {
+            Machine M = null;
+            String plugboard = null;
+            int blank = 0, empty = 0;
+            String line;
+            while ((line = _input.readLine()) != null) {
+                if (isBlank(line)) {
+                    blank += 1;
+                    if (line.isEmpty()) {
+                        empty += 1;
+                    }
+                } else if (isSettings(line)) {
+                    checkSettingsLength();
+                    printBlankLines(empty);
+                    blank = empty = 0;
+                    M = configure(made, line, plugboard);
+                    plugboard = line.contains("(") ? line : plugboard;
+                    if (_stats != null) {
+                        if (section != null) {
+                            section.end();
+                        }
+                        section = _stats.begin(M);
+                    }
+                } else if (M == null) {
+                    throw new EnigmaException("Setting line invalid.");
+                } else {
+                    printBlankLines(blank);
+                    blank = empty = 0;
+                    printInputLine(M, line, section);
+                    if (!_input.ready()) {
+                        _formatter.flush();
                     }
                 }
+            }
+            if (blank > 0 && M == null) {
+                throw new EnigmaException("Setting line invalid.");
+            }
+            printBlankLines(blank);
+            if (section != null) {
+                section.end();
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            try {
+                _formatter.flush();
+            } catch (IOException excp) {
+                System.err.printf("Error: could not write output%n");
+            }
+        }
+    }
 
+    /**
+     * Do the work of process() with the sections of _input that begin
+     * at each settings line converted concurrently in _pool, each on its
+     * own copy of the unconfigured machine MADE.  Finished sections are
+     * written in input order; at most a few sections per thread are in
+     * flight at once, so reading stalls while the oldest is unfinished.
+     * A section with a message line too long to hold (see LINE_LIMIT)
+     * is instead converted as it is read, once the sections before it
+     * have been written.  When an error is found, the sections before
+     * it are written before it is reported, as in a serial conversion.
+     */
+    private void processConcurrently(Machine made) {
+        ArrayDeque<Future<Converted>> pending = new ArrayDeque<>();
+        Machine serial = null;
+        Stats.Section section = null;
+        try {
+            String settings = null, plugboard = null;
+            ArrayList<String> lines = new ArrayList<>();
+            int blank = 0, empty = 0;
+            String line;
+            while ((line = _input.readLine()) != null) {
+                if (isBlank(line)) {
+                    blank += 1;
+                    if (line.isEmpty()) {
+                        empty += 1;
+                    }
+                    continue;
+                } else if (isSettings(line)) {
+                    if (_input.cut() && settings != null && serial == null) {
+                        pending.add(submitSection(made, settings,
+                                                  plugboard, lines));
+                    }
+                    checkSettingsLength();
+                    addBlankLines(lines, empty);
+                    if (settings == null) {
+                        printBlankLines(empty);
+                    } else {
+                        if (serial == null) {
+                            pending.add(submitSection(made, settings,
+                                                      plugboard, lines));
+                            writeFinished(pending, 4 * _threads);
+                        } else {
+                            printLines(serial, lines, section);
+                            endSection(section);
+                            serial = null;
+                            section = null;
+                        }
+                        plugboard = settings.contains("(")
+                            ? settings : plugboard;
+                    }
+                    settings = line;
+                    lines = new ArrayList<>();
+                } else if (settings == null) {
+                    throw new EnigmaException("Setting line invalid.");
+                } else {
+                    addBlankLines(lines, blank);
+                    if (serial == null && _input.cut()) {
+                        writeFinished(pending, 0);
+                        serial = configure(made, settings, plugboard);
+                        section = _stats == null ? null : _stats.begin(serial);
+                    }
+                    if (serial != null) {
+                        printLines(serial, lines, section);
+                        printInputLine(serial, line, section);
+                    } else if (line.indexOf('*') == -1) {
+                        lines.add(line);
+                    }
+                }
+                blank = empty = 0;
+            }
+            if (blank > 0 && settings == null) {
+                throw new EnigmaException("Setting line invalid.");
+            }
+            if (settings != null) {
+                addBlankLines(lines, blank);
+                if (serial == null) {
+                    pending.add(submitSection(made, settings, plugboard,
+                                              lines));
+                } else {
+                    printLines(serial, lines, section);
+                    endSection(section);
+                }
+            }
+            writeFinished(pending, 0);
+        } catch (EnigmaException excp) {
+            writeBeforeError(pending);
+            throw excp;
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            try {
+                _formatter.flush();
+            } catch (IOException excp) {
+                System.err.printf("Error: could not write output%n");
             }
         }
+    }
 
+    /** Print the conversions of LINES by M, recording them in SECTION
+     *  unless it is null, and clear LINES. */
+    private void printLines(Machine M, ArrayList<String> lines,
+                            Stats.Section section) throws IOException {
+        for (String line : lines) {
+            _line = printMessageLine(M, line, _formatter, _line, section);
+        }
+        lines.clear();
     }
 
+    /** End SECTION, unless it is null. */
+    private static void endSection(Stats.Section section) {
+        if (section != null) {
+            section.end();
+        }
+    }
 
+    /** Throw an exception if the settings line just read from _input was
+     *  cut short. */
+    private void checkSettingsLength() {
+        if (_input.cut()) {
+            throw error("settings line longer than %d characters",
+                        LINE_LIMIT);
+        }
+    }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
-        try {
-            String alpha = _config.nextLine();
-            if (alpha.contains("-")) {
-                int dash = alpha.indexOf("-");
-                char a = alpha.charAt(dash - 1);
-                char b = alpha.charAt(dash + 1);
-                _alphabet = new CharacterRange(a, b);
-            } else {
-                _alphabet = new FreeCharacter(alpha);
+    /** Print the conversion by M of the message line LINE just read from
+     *  _input, recording it in SECTION unless it is null.  A line that
+     *  contains '*' is skipped.  When LINE was cut short, the rest of it
+     *  is read from _input and converted a buffer at a time; a '*' in
+     *  that rest is an error, since the start of the line has already
+     *  been written. */
+    private void printInputLine(Machine M, String line,
+                                Stats.Section section) throws IOException {
+        if (line.indexOf('*') != -1) {
+            _input.skipRest();
+        } else if (!_input.cut()) {
+            _line = printMessageLine(M, line, _formatter, _line, section);
+        } else {
+            _line = putConversion(M, line, _formatter, _line, section);
+            int n;
+            while ((n = _input.readRest(_line, 0, _line.length)) >= 0) {
+                for (int i = 0; i < n; i += 1) {
+                    if (_line[i] == '*') {
+                        throw error("'*' after the first %d characters of "
+                                    + "a message line", LINE_LIMIT);
+                    }
+                }
+                putConversion(M, _line, n, _formatter, section);
             }
-            String numset = _config.nextLine();
-            String numrotors1 = numset.replaceAll("\\s+", "");
-            int numtotalrotors = 0;
-            int numpawls = 0;
+            _formatter.endLine();
+        }
+    }
+
+    /** Add N empty lines to LINES. */
+    private static void addBlankLines(ArrayList<String> lines, int n) {
+        for (int i = 0; i < n; i += 1) {
+            lines.add("");
+        }
+    }
+
+    /** Return the pending conversion in _pool of the message LINES that
+     *  follow the settings line SETTINGS, using a copy of MADE.  When
+     *  SETTINGS names no plugboard, the one last given by the settings
+     *  line PLUGBOARD (if not null) remains in effect.  If a line cannot
+     *  be converted, the conversion holds the text of the lines before
+     *  it along with the error. */
+    private Future<Converted> submitSection(Machine made, String settings,
+                                         String plugboard,
+                                         ArrayList<String> lines) {
+        return _pool.submit(() -> {
+            CharArrayWriter text = new CharArrayWriter();
+            GroupFormatter formatter =
+                new GroupFormatter(text, GroupFormatter.GROUP_SIZE * 256);
             try {
-                String inp = String.valueOf(numrotors1.charAt(0));
-                numtotalrotors = Integer.parseInt(inp);
-                String inp2 = String.valueOf(numrotors1.charAt(1));
-                numpawls = Integer.parseInt(inp2);
-            } catch (NumberFormatException excp) {
-                throw error("missing number of rotors");
+                Machine M = configure(made, settings, plugboard);
+                Stats.Section section =
+                    _stats == null ? null : _stats.begin(M);
+                char[] buffer = new char[GroupFormatter.GROUP_SIZE * 256];
+                for (String line : lines) {
+                    buffer = printMessageLine(M, line, formatter, buffer,
+                                              section);
+                }
+                endSection(section);
+            } catch (EnigmaException excp) {
+                formatter.flush();
+                return new Converted(text.toCharArray(), excp);
             }
-            ArrayList<Rotor> allrotors = new ArrayList<>();
-            while (_config.hasNextLine()) {
-                String rotoline = _config.nextLine();
-                if (!rotoline.isEmpty()) {
-                    allrotors.add(readRotor(rotoline));
+            formatter.flush();
+            return new Converted(text.toCharArray(), null);
+        });
+    }
+
+    /** Write out the oldest conversions in PENDING, waiting for them to
+     *  finish as necessary, until no more than LIMIT remain.  If one
+     *  failed, the text it converted before failing is written, its
+     *  error is thrown, and the later ones are discarded. */
+    private void writeFinished(ArrayDeque<Future<Converted>> pending,
+                               int limit) throws IOException {
+        while (pending.size() > limit) {
+            Converted converted;
+            try {
+                converted = pending.remove().get();
+            } catch (InterruptedException excp) {
+                pending.clear();
+                Thread.currentThread().interrupt();
+                throw error("interrupted");
+            } catch (ExecutionException excp) {
+                pending.clear();
+                if (excp.getCause() instanceof EnigmaException) {
+                    throw (EnigmaException) excp.getCause();
                 }
+                throw error("conversion failed: %s", excp.getCause());
+            }
+            char[] text = converted._text;
+            _formatter.putLines(text, 0, text.length);
+            if (converted._error != null) {
+                pending.clear();
+                throw converted._error;
             }
-            return new Machine(_alphabet, numtotalrotors, numpawls, allrotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
         }
     }
 
-    /** Return a rotor, reading its description from _config.
-     * @param roto The input is checked above.*/
-    private Rotor readRotor(String roto) {
+    /** Write out the conversions in PENDING, which all come before an
+     *  error found while reading, as a serial conversion would have done
+     *  before reaching it.  An error in one of them is thrown instead,
+     *  since serially it would have been found first. */
+    private void writeBeforeError(ArrayDeque<Future<Converted>> pending) {
         try {
-            String front = roto.substring(0, roto.indexOf("("));
-            String back = roto.substring(roto.indexOf("("));
-            if (_alphabet.getClass() == CharacterRange.class) {
-                String che = back.replaceAll("\\s+", "");
-                if (!che.matches("([\\\\(][a-zA-Z]+[\\\\)])*")) {
-                    throw new EnigmaException("Wrong permutation cycles.");
-                }
+            writeFinished(pending, 0);
+        } catch (IOException excp) {
+            /* The error being reported takes precedence. */
+        }
+    }
+
+    /** The result of converting a section in _pool. */
+    private static class Converted {
+
+        /** The conversion TEXT of a section, which stopped at ERROR if
+         *  that is not null. */
+        Converted(char[] text, EnigmaException error) {
+            _text = text;
+            _error = error;
+        }
+
+        /** Formatted conversion of the lines before any error. */
+        private final char[] _text;
+
+        /** Error that stopped the conversion, or null. */
+        private final EnigmaException _error;
+
+    }
+
+    /** Return a copy of the unconfigured machine MADE set up according
+     *  to the settings line SETTINGS.  When SETTINGS names no plugboard,
+     *  the one last given by the settings line PLUGBOARD (if not null)
+     *  remains in effect.  Machines so configured are cached by their
+     *  settings, so that a repeated settings line costs only a copy. */
+    private Machine configure(Machine made, String settings,
+                              String plugboard) {
+        boolean inherits = !settings.contains("(") && plugboard != null;
+        String key = SettingsCache.normalize(settings);
+        if (inherits) {
+            key += "\n" + SettingsCache.normalize(plugboard);
+        }
+        Events.Setup event = new Events.Setup();
+        event.begin();
+        Machine template = _settingsCache.get(key);
+        event.cached = template != null;
+        if (template == null) {
+            template = new Machine(made);
+            if (inherits) {
+                setUp(template, plugboard);
             }
-            Permutation perm = new Permutation(back, _alphabet);
-            String[] properties = front.split("\\s+");
-            int fuuz = 0;
-            while (fuuz < properties.length) {
-                if (!properties[fuuz].isEmpty()) {
-                    break;
-                } else {
-                    fuuz += 1;
-                }
+            setUp(template, settings);
+            _settingsCache.put(key, template);
+        }
+        Machine M = new Machine(template);
+        attachCycleTable(M);
+        attachGeneratedPath(M);
+        if (event.shouldCommit()) {
+            event.settings = settings;
+            event.commit();
+        }
+        return M;
+    }
+
+    /** If cycle tables are enabled, have M convert using the table for
+     *  its current configuration.  A table is built once a configuration
+     *  has been set up CYCLE_TABLE_THRESHOLD times, since building one
+     *  costs about as much as converting a character in every state.
+     *  Tables are built outside the lock on _cycleTables, so that other
+     *  sections need not wait for them. */
+    private void attachCycleTable(Machine M) {
+        if (_cycleTables == null) {
+            return;
+        }
+        String key = CycleTable.keyOf(M);
+        CycleTable table;
+        boolean build;
+        synchronized (_cycleTables) {
+            table = _cycleTables.get(key);
+            build = table == null
+                && _cycleSightings.merge(key, 1, Integer::sum)
+                   >= CYCLE_TABLE_THRESHOLD;
+            if (build) {
+                _cycleSightings.remove(key);
+            }
+            if (_cycleSightings.size() > MAX_CYCLE_SIGHTINGS) {
+                _cycleSightings.clear();
+            }
+        }
+        if (build) {
+            table = CycleTable.of(M);
+            if (table != null) {
+                table = putCycleTable(key, table);
+            }
+        }
+        M.useCycleTable(table);
+    }
+
+    /** Add TABLE to _cycleTables under KEY unless a table is already
+     *  there, and return the table that is.  The least recently used
+     *  tables are then dropped until those kept take no more than
+     *  MAX_CYCLE_TABLE_BYTES. */
+    private CycleTable putCycleTable(String key, CycleTable table) {
+        synchronized (_cycleTables) {
+            CycleTable present = _cycleTables.putIfAbsent(key, table);
+            if (present != null) {
+                return present;
+            }
+            _cycleTableBytes += table.bytes();
+            while (_cycleTableBytes > MAX_CYCLE_TABLE_BYTES
+                   && _cycleTables.size() > 1) {
+                String eldest = _cycleTables.keySet().iterator().next();
+                _cycleTableBytes -= _cycleTables.remove(eldest).bytes();
             }
-            String name = properties[fuuz].toUpperCase();
-            String type = properties[fuuz + 1].toUpperCase();
-            Rotor one = new Rotor(name, perm);
-            if (type.contains("M")) {
-                one = new MovingRotor(name, perm, type.substring(1));
-            } else if (type.contains("N")) {
-                one = new FixedRotor(name, perm);
-            } else if (type.contains("R")) {
-                while (!perm.derangement()) {
-                    back = back.concat(_config.nextLine());
-                    perm = new Permutation(back, _alphabet);
+            return table;
+        }
+    }
+
+    /** If generated paths are enabled, have M convert through the path
+     *  generated for its rotors and plugboard.  As with cycle tables, a
+     *  path is generated only once a configuration has been set up
+     *  GENERATED_PATH_THRESHOLD times, since defining and compiling its
+     *  class costs as much as converting many characters. */
+    private void attachGeneratedPath(Machine M) {
+        if (_generatedPaths == null) {
+            return;
+        }
+        String key = GeneratedPath.keyOf(M);
+        GeneratedPath path;
+        synchronized (_generatedPaths) {
+            path = _generatedPaths.get(key);
+            if (path == null
+                && _pathSightings.merge(key, 1, Integer::sum)
+                   >= GENERATED_PATH_THRESHOLD) {
+                _pathSightings.remove(key);
+                path = GeneratedPath.of(M);
+                if (path != null) {
+                    _generatedPaths.put(key, path);
                 }
-                one = new Reflector(name, perm);
             }
-            return one;
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+            if (_pathSightings.size() > MAX_CYCLE_SIGHTINGS) {
+                _pathSightings.clear();
+            }
+        }
+        M.useGeneratedPath(path);
+    }
+
+    /** Return true iff LINE consists only of whitespace. */
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i += 1) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff the first whitespace-delimited token of LINE is
+     *  exactly "*", marking it as a settings line. */
+    private static boolean isSettings(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i += 1;
+        }
+        return i < line.length() && line.charAt(i) == '*'
+            && (i + 1 == line.length()
+                || Character.isWhitespace(line.charAt(i + 1)));
+    }
+
+    /** Print N empty lines. */
+    private void printBlankLines(int n) throws IOException {
+        for (int i = 0; i < n; i += 1) {
+            _formatter.endLine();
         }
     }
 
+    /** Return an Enigma machine configured from the compiled configuration
+     *  _snapshot, if there is one, and otherwise from _config. */
+    private Machine loadConfig() {
+        Events.ConfigLoad event = new Events.ConfigLoad();
+        event.begin();
+        Machine made;
+        if (_snapshot != null) {
+            made = Snapshot.read(_snapshot);
+            _alphabet = made.alphabet();
+        } else {
+            made = readConfig();
+        }
+        if (event.shouldCommit()) {
+            event.file = _snapshot != null ? _snapshot : _configName;
+            event.compiled = _snapshot != null;
+            event.rotors = made.allRotors().size();
+            event.commit();
+        }
+        return made;
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config. */
+    private Machine readConfig() {
+        Machine made;
+        try (Reader config = _config) {
+            made = new ConfigReader(config, _configName).read();
+        } catch (IOException excp) {
+            throw error("could not close %s", _configName);
+        }
+        _alphabet = made.alphabet();
+        return made;
+    }
+
     /** Return the rotors given the parsed.
      * @param parsed This is the input given in setUp.
      * Helper function for setUp. */
@@ -257,42 +882,151 @@ public final class Main {
         }
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String output = "";
-        int breakpoint = 0;
-        for (int i = 1; i <= msg.length(); i += 1) {
-            if (i % 5 == 0) {
-                if (output.length() == 0) {
-                    output += msg.substring(breakpoint, i);
-                } else {
-                    output += " " + msg.substring(breakpoint, i);
-                }
-                breakpoint = i;
-            } else if (msg.length() - breakpoint <= 4) {
-                if (output.length() == 0) {
-                    output += msg.substring(breakpoint);
-                } else {
-                    output += " " + msg.substring(breakpoint);
-                }
-                break;
-            }
+    /** Print the conversion of LINE by machine M to OUT in groups of five
+     *  (except that the last group may have fewer letters), converting
+     *  in BUFFER if it is large enough, and recording the conversion in
+     *  SECTION unless it is null.  Returns BUFFER, or the larger buffer
+     *  used in its place, for reuse with later lines. */
+    private char[] printMessageLine(Machine M, String line,
+                                    GroupFormatter out, char[] buffer,
+                                    Stats.Section section)
+        throws IOException {
+        buffer = putConversion(M, line, out, buffer, section);
+        out.endLine();
+        return buffer;
+    }
+
+    /** Put the conversion of LINE by M to OUT as for printMessageLine,
+     *  without ending the line, so that more may follow. */
+    private char[] putConversion(Machine M, String line, GroupFormatter out,
+                                 char[] buffer, Stats.Section section)
+        throws IOException {
+        int n = line.length();
+        if (buffer.length < n) {
+            buffer = new char[Math.max(n, 2 * buffer.length)];
         }
-        _output.println(output);
+        line.getChars(0, n, buffer, 0);
+        putConversion(M, buffer, n, out, section);
+        return buffer;
     }
 
+    /** Put the conversion by M of the first N characters of CHARS, which
+     *  may be overwritten, to OUT, recording it in SECTION unless it is
+     *  null.  Conversions of at least 2 * Machine.PARALLEL_CHUNK
+     *  characters are split among _pool, if there is one. */
+    private void putConversion(Machine M, char[] chars, int n,
+                               GroupFormatter out, Stats.Section section)
+        throws IOException {
+        Events.Conversion event = new Events.Conversion();
+        event.begin();
+        char[] result;
+        int len;
+        if (_pool != null && n >= 2 * Machine.PARALLEL_CHUNK) {
+            result = new char[n];
+            len = M.convert(chars, 0, n, result, 0, _pool);
+        } else {
+            result = chars;
+            len = M.convert(chars, 0, n, chars, 0);
+        }
+        if (event.shouldCommit()) {
+            event.length = n;
+            event.characters = len;
+            event.commit();
+        }
+        if (section != null) {
+            section.converted(len);
+        }
+        out.put(result, 0, len);
+    }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private LineReader _input;
 
     /** Source of machine configuration. */
-    private Scanner _config;
+    private Reader _config;
+
+    /** Name of the file read by _config. */
+    private String _configName;
+
+    /** Name of the compiled configuration file, if the configuration
+     *  is compiled rather than read from _config. */
+    private String _snapshot;
 
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private Writer _output;
+
+    /** Formatter for the lines written to _output. */
+    private GroupFormatter _formatter;
+
+    /** Buffer holding the message line being converted. */
+    private char[] _line;
+
+    /** Number of threads used to convert messages. */
+    private int _threads = 1;
+
+    /** Statistics printed on exit, or null if they are not wanted. */
+    private Stats _stats;
+
+    /** Pool running concurrent conversions, when _threads > 1. */
+    private ForkJoinPool _pool;
+
+    /** Recently configured machines, by settings line. */
+    private SettingsCache _settingsCache =
+        new SettingsCache(DEFAULT_SETTINGS_CACHE);
+
+    /** Default capacity of _settingsCache. */
+    static final int DEFAULT_SETTINGS_CACHE = 64;
+
+    /** Recently used cycle tables, by CycleTable.keyOf of the machines
+     *  they fit, or null if cycle tables are not in use. */
+    private LinkedHashMap<String, CycleTable> _cycleTables;
+
+    /** Number of times each configuration without a cycle table has been
+     *  set up. */
+    private HashMap<String, Integer> _cycleSightings = new HashMap<>();
+
+    /** Number of set-ups of a configuration after which its cycle table
+     *  is built. */
+    private static final int CYCLE_TABLE_THRESHOLD = 4;
+
+    /** Total bytes of the tables in _cycleTables. */
+    private long _cycleTableBytes;
+
+    /** Largest total bytes of the tables kept in _cycleTables, enough
+     *  for several of the largest. */
+    private static final long MAX_CYCLE_TABLE_BYTES = 1L << 28;
+
+    /** Recently used generated paths, by GeneratedPath.keyOf of the
+     *  machines they fit, or null if generated paths are not in use. */
+    private LinkedHashMap<String, GeneratedPath> _generatedPaths;
+
+    /** Number of times each configuration without a generated path has
+     *  been set up. */
+    private HashMap<String, Integer> _pathSightings = new HashMap<>();
+
+    /** Number of set-ups of a configuration after which its path is
+     *  generated. */
+    private static final int GENERATED_PATH_THRESHOLD = 4;
+
+    /** Largest number of generated paths kept in _generatedPaths. */
+    private static final int MAX_GENERATED_PATHS = 32;
+
+    /** Largest number of configurations counted in _cycleSightings and
+     *  _pathSightings. */
+    private static final int MAX_CYCLE_SIGHTINGS = 4096;
+
+    /** Largest number of characters of an input line held in memory.
+     *  Longer message lines are converted as they are read. */
+    static final int LINE_LIMIT = 1 << 20;
+
+    /** Size in characters of the input and output buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Initial size in characters of the buffers of a Main made for one
+     *  of many concurrent sessions, which grow as needed. */
+    private static final int SESSION_BUFFER_SIZE = 1 << 12;
 
 }
@@ -0,0 +1,100 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** The suite of all JUnit tests for the Main class.
+ *  @Shuang
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Configuration used by the tests. */
+    private static final String CONFIG =
+        "A-Z\n 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** Return a new temporary file holding TEXT. */
+    private static File write(String text) throws IOException {
+        File file = File.createTempFile("enigma", ".txt");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), text);
+        return file;
+    }
+
+    /** Run Main with the options OPTIONS on INPUT, which must contain an
+     *  error, and return the output written before it was reported. */
+    private static String outputBeforeError(String input, String... options)
+        throws IOException {
+        File config = write(CONFIG), in = write(input);
+        File out = File.createTempFile("enigma", ".out");
+        out.deleteOnExit();
+        String[] args = new String[options.length + 3];
+        System.arraycopy(options, 0, args, 0, options.length);
+        args[options.length] = config.getPath();
+        args[options.length + 1] = in.getPath();
+        args[options.length + 2] = out.getPath();
+        try {
+            new Main(args).process();
+            fail("no error reported");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+        return Files.readString(out.toPath());
+    }
+
+    @Test
+    public void checkThreadedOutputBeforeError() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int k = 0; k < 20; k += 1) {
+            input.append("* B BETA III IV I AXL").append((char) ('A' + k))
+                .append(" (HQ) (EX)\nFROM HIS SHOULDER HIAWATHA\n");
+        }
+        String serial = outputBeforeError(
+            input + "* B BETA III IV I AXLE" + " ".repeat(Main.LINE_LIMIT)
+            + "\nTOOK THE CAMERA\n");
+        assertEquals(20, serial.split("\n").length);
+        assertEquals(serial, outputBeforeError(
+            input + "* B BETA III IV I AXLE" + " ".repeat(Main.LINE_LIMIT)
+            + "\nTOOK THE CAMERA\n", "--threads", "3"));
+        String badSettings = input + "* B BETA III III I AAAA\nOF ROSEWOOD\n"
+            + "* B BETA III IV I AAAA\nOF ROSEWOOD\n";
+        serial = outputBeforeError(badSettings);
+        assertTrue(serial.length() > 0);
+        assertEquals(serial, outputBeforeError(badSettings, "--threads",
+                                               "3"));
+    }
+
+    @Test
+    public void checkThreadedOutputBeforeBadCharacter() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int k = 0; k < 5; k += 1) {
+            input.append("* B BETA III IV I AXL").append((char) ('A' + k))
+                .append(" (HQ) (EX)\nFROM HIS SHOULDER\n")
+                .append(k == 3 ? "HIAWATHA 1\n" : "HIAWATHA\n")
+                .append("TOOK THE CAMERA\n");
+        }
+        String serial = outputBeforeError(input.toString());
+        assertEquals(3 * 3 + 1, serial.split("\n").length);
+        assertEquals(serial, outputBeforeError(input.toString(), "--threads",
+                                               "3"));
+    }
+
+}
@@ -12,7 +12,11 @@ class MovingRotor extends Rotor {
      *  The Rotor is initally in its 0 setting (first character of its
      *  alphabet).
      */
-    private String _notches;
+    private final String _notches;
+
+    /** Bit P % 64 of _notchBits[P / 64] is set iff I have a notch at
+     *  setting P. */
+    private final long[] _notchBits;
 
     /** Initiate a moving rotor with notches.
      * @param name the input initiation name.
@@ -21,11 +25,38 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        _notchBits = new long[(size() + 63) >>> 6];
+        for (int k = 0; k < notches.length(); k += 1) {
+            char c = notches.charAt(k);
+            if (alphabet().contains(c)) {
+                int posn = alphabet().toInt(c);
+                _notchBits[posn >>> 6] |= 1L << posn;
+            }
+        }
+    }
+
+    /** Return the characters at whose positions I have notches. */
+    String notches() {
+        return _notches;
+    }
+
+    @Override
+    boolean atNotch(int posn) {
+        return (_notchBits[posn >>> 6] & (1L << posn)) != 0;
     }
 
     @Override
-    boolean atNotch() {
-        return _notches.indexOf(alphabet().toChar(setting())) != -1;
+    int nextNotch(int posn) {
+        int w = posn >>> 6;
+        long bits = _notchBits[w] & (-1L << posn);
+        for (int k = 0; k <= _notchBits.length; k += 1) {
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            w = w + 1 == _notchBits.length ? 0 : w + 1;
+            bits = _notchBits[w];
+        }
+        return -1;
     }
 
     @Override
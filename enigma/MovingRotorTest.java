@@ -24,10 +24,10 @@ public class MovingRotorTest {
     private String alpha = UPPER_STRING;
 
     /** Check that rotor has an alphabet whose size is that of
-     *  FROMALPHA and TOALPHA and that maps each character of
-     *  FROMALPHA to the corresponding character of FROMALPHA, and
-     *  vice-versa. TESTID is used in error messages. */
-    private void checkRotor(String testId,
+     *  FROMALPHA and TOALPHA and that, at setting POSN, maps each
+     *  character of FROMALPHA to the corresponding character of
+     *  FROMALPHA, and vice-versa. TESTID is used in error messages. */
+    private void checkRotor(String testId, int posn,
                             String fromAlpha, String toAlpha) {
         int N = fromAlpha.length();
         assertEquals(testId + " (wrong length)", N, rotor.size());
@@ -35,9 +35,9 @@ public class MovingRotorTest {
             char c = fromAlpha.charAt(i), e = toAlpha.charAt(i);
             int ci = alpha.indexOf(c), ei = alpha.indexOf(e);
             assertEquals(msg(testId, "wrong translation of %d (%c)", ci, c),
-                         ei, rotor.convertForward(ci));
+                         ei, rotor.convertForward(ci, posn));
             assertEquals(msg(testId, "wrong inverse of %d (%c)", ei, e),
-                         ci, rotor.convertBackward(ei));
+                         ci, rotor.convertBackward(ei, posn));
         }
     }
 
@@ -54,21 +54,47 @@ public class MovingRotorTest {
     @Test
     public void checkRotorAtA() {
         setRotor("I", NAVALA, "");
-        checkRotor("Rotor I (A)", UPPER_STRING, NAVALA_MAP.get("I"));
+        checkRotor("Rotor I (A)", 0, UPPER_STRING, NAVALA_MAP.get("I"));
     }
 
     @Test
-    public void checkRotorAdvance() {
+    public void checkRotorAtB() {
         setRotor("I", NAVALA, "");
-        rotor.advance();
-        checkRotor("Rotor I advanced", UPPER_STRING, NAVALB_MAP.get("I"));
+        checkRotor("Rotor I (B)", 1, UPPER_STRING, NAVALB_MAP.get("I"));
     }
 
     @Test
-    public void checkRotorSet() {
+    public void checkRotorAtZ() {
         setRotor("I", NAVALA, "");
-        rotor.set(25);
-        checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
+        checkRotor("Rotor I (Z)", 25, UPPER_STRING, NAVALZ_MAP.get("I"));
+    }
+
+    @Test
+    public void checkNotches() {
+        setRotor("VI", NAVALA, "ZM");
+        for (int posn = 0; posn < 26; posn += 1) {
+            assertEquals(posn == 12 || posn == 25, rotor.atNotch(posn));
+        }
+        assertEquals(12, rotor.nextNotch(0));
+        assertEquals(12, rotor.nextNotch(12));
+        assertEquals(25, rotor.nextNotch(13));
+        assertEquals(25, rotor.nextNotch(25));
+        setRotor("I", NAVALA, "");
+        assertFalse(rotor.atNotch(16));
+        assertEquals(-1, rotor.nextNotch(3));
+    }
+
+    @Test
+    public void checkWideNotches() {
+        Alphabet wide = new CharacterRange('\u0100', '\u01c7');
+        rotor = new MovingRotor("W", new Permutation("", wide),
+                                "\u0105\u0150");
+        assertTrue(rotor.atNotch(5));
+        assertTrue(rotor.atNotch(80));
+        assertFalse(rotor.atNotch(64));
+        assertEquals(80, rotor.nextNotch(6));
+        assertEquals(5, rotor.nextNotch(81));
+        assertEquals(5, rotor.nextNotch(199));
     }
 
 }
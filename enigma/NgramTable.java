@@ -0,0 +1,171 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import static enigma.EnigmaException.*;
+
+/** Log-probabilities of the sequences of N letters (n-grams) of some
+ *  language, held in one flat array indexed by the n-gram read as an
+ *  N-digit number in base alphabet size.  N-grams never seen get a
+ *  probability well below that of any seen.
+ *  @author nishuang
+ */
+class NgramTable {
+
+    /** A table of N-grams over ALPHABET whose counts are COUNTS, indexed
+     *  as described in the class comment. */
+    private NgramTable(int n, Alphabet alphabet, long[] counts) {
+        _n = n;
+        _alphabet = alphabet;
+        _size = alphabet.size();
+        _scores = new float[counts.length];
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            throw error("no n-grams counted");
+        }
+        double floor = Math.log10(0.01 / total);
+        float max = (float) floor;
+        for (int i = 0; i < counts.length; i += 1) {
+            _scores[i] = (float) (counts[i] == 0 ? floor
+                                  : Math.log10((double) counts[i] / total));
+            max = Math.max(max, _scores[i]);
+        }
+        _max = max;
+    }
+
+    /** Return the table of N-grams over ALPHABET counted in the letters of
+     *  TEXT (ignoring characters not in ALPHABET). */
+    static NgramTable count(String text, int n, Alphabet alphabet) {
+        long[] counts = new long[entries(n, alphabet)];
+        int size = alphabet.size(), index = 0, run = 0;
+        int prefixes = counts.length / size;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = Character.toUpperCase(text.charAt(i));
+            if (alphabet.contains(c)) {
+                index = index % prefixes * size + alphabet.toInt(c);
+                run += 1;
+                if (run >= n) {
+                    counts[index] += 1;
+                }
+            }
+        }
+        return new NgramTable(n, alphabet, counts);
+    }
+
+    /** Return the table of n-grams over ALPHABET read from the file named
+     *  NAME, each of whose non-blank lines holds an n-gram and its count,
+     *  separated by whitespace.  All n-grams must have the same length. */
+    static NgramTable read(String name, Alphabet alphabet) {
+        try (BufferedReader in = new BufferedReader(new FileReader(name))) {
+            long[] counts = null;
+            int n = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields[0].isEmpty()) {
+                    continue;
+                }
+                if (fields.length != 2) {
+                    throw error("bad n-gram line: %s", line);
+                }
+                if (counts == null) {
+                    n = fields[0].length();
+                    counts = new long[entries(n, alphabet)];
+                } else if (fields[0].length() != n) {
+                    throw error("n-grams of different lengths in %s", name);
+                }
+                int index = 0;
+                for (int i = 0; i < n; i += 1) {
+                    char c = Character.toUpperCase(fields[0].charAt(i));
+                    if (!alphabet.contains(c)) {
+                        throw error("character '%c' not in alphabet", c);
+                    }
+                    index = index * alphabet.size() + alphabet.toInt(c);
+                }
+                try {
+                    counts[index] += Long.parseLong(fields[1]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad n-gram count: %s", fields[1]);
+                }
+            }
+            if (counts == null) {
+                throw error("no n-grams in %s", name);
+            }
+            return new NgramTable(n, alphabet, counts);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return the number of N-grams over ALPHABET. */
+    private static int entries(int n, Alphabet alphabet) {
+        if (n < 1) {
+            throw error("n-grams must have at least one letter");
+        }
+        long result = 1;
+        for (int i = 0; i < n; i += 1) {
+            result *= alphabet.size();
+            if (result > MAX_ENTRIES) {
+                throw error("too many %d-grams to tabulate", n);
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return the length of my n-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the alphabet of my n-grams. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of entries in my table. */
+    int entries() {
+        return _scores.length;
+    }
+
+    /** Return the number of the n-gram ending in letter C after n-gram
+     *  number INDEX.  That is (INDEX * alphabet size + C) % entries(),
+     *  but the oldest letter of INDEX is dropped before multiplying, so
+     *  that the product never exceeds entries(). */
+    int next(int index, int c) {
+        return index % (_scores.length / _size) * _size + c;
+    }
+
+    /** Return the log-probability of n-gram number INDEX. */
+    float score(int index) {
+        return _scores[index];
+    }
+
+    /** Return the largest log-probability of any n-gram. */
+    float maxScore() {
+        return _max;
+    }
+
+    /** Largest number of entries tabulated. */
+    static final int MAX_ENTRIES = 1 << 26;
+
+    /** Length of my n-grams. */
+    private final int _n;
+
+    /** Alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Log-probability of each n-gram. */
+    private final float[] _scores;
+
+    /** Largest entry of _scores. */
+    private final float _max;
+
+}
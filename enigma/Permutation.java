@@ -1,10 +1,8 @@
 package enigma;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-
+import java.util.Arrays;
 
+import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -16,42 +14,89 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  A lower-case letter that is not in
+     *  ALPHABET stands for its upper-case form if that is. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
         int size = _alphabet.size();
+        _forward = new int[size];
+        _inverse = new int[size];
         for (int i = 0; i < size; i += 1) {
-            _permutation.put(alphabet().toChar(i), alphabet().toChar(i));
+            _forward[i] = i;
         }
-        int j = 0;
-        char init = 'a';
-        while (j < cycles.length() - 1) {
-            if (cycles.charAt(j) == '(') {
-                init = cycles.charAt(j + 1);
-                j += 1;
-            } else if (cycles.charAt(j + 1) == ')') {
-                _permutation.put(cycles.charAt(j), init);
-                j += 2;
-            } else {
-                _permutation.put(cycles.charAt(j), cycles.charAt(j + 1));
-                j += 1;
+        int start = -1;
+        for (int j = 0; j < cycles.length(); j += 1) {
+            char c = cycles.charAt(j);
+            if (Character.isWhitespace(c)) {
+                continue;
+            } else if (c == '(') {
+                if (start != -1) {
+                    throw error("nested cycle in %s", cycles);
+                }
+                start = j + 1;
+            } else if (c == ')') {
+                if (start == -1) {
+                    throw error("unbalanced cycle in %s", cycles);
+                }
+                addCycle(cycles.substring(start, j));
+                start = -1;
+            } else if (start == -1) {
+                throw error("character '%c' outside of a cycle", c);
             }
         }
+        if (start != -1) {
+            throw error("unterminated cycle in %s", cycles);
+        }
+        for (int i = 0; i < size; i += 1) {
+            _inverse[_forward[i]] = i;
+        }
+        for (int i = 0; i < size; i += 1) {
+            if (_forward[_inverse[i]] != i) {
+                throw error("cycles %s do not form a permutation", cycles);
+            }
+        }
+    }
 
+    /** Set this Permutation to the one taking each index I of ALPHABET
+     *  to FORWARD[I]. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        int size = _alphabet.size();
+        if (forward.length != size) {
+            throw error("permutation of %d indices for alphabet of %d",
+                        forward.length, size);
+        }
+        _forward = forward.clone();
+        _inverse = new int[size];
+        Arrays.fill(_inverse, -1);
+        for (int i = 0; i < size; i += 1) {
+            int k = _forward[i];
+            if (k < 0 || k >= size || _inverse[k] != -1) {
+                throw error("mapping does not form a permutation");
+            }
+            _inverse[k] = i;
+        }
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
+     *  c0c1...cm.  Whitespace inside CYCLE is ignored. */
     private void addCycle(String cycle) {
+        int first = -1, prev = -1;
         for (int y = 0; y < cycle.length(); y += 1) {
-            char c = cycle.toCharArray()[y];
-            if (y == cycle.length() - 1) {
-                char c1 = cycle.toCharArray()[0];
-                _permutation.put(c, c1);
+            char c = cycle.charAt(y);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            int k = index(c);
+            if (first == -1) {
+                first = k;
             } else {
-                char c2 = cycle.toCharArray()[y + 1];
-                _permutation.put(c, c2);
+                _forward[prev] = k;
             }
+            prev = k;
+        }
+        if (first != -1) {
+            _forward[prev] = first;
         }
     }
 
@@ -66,35 +111,53 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return alphabet().size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        int m = wrap(p);
-        char beforeper = alphabet().toChar(m);
-        char afterper = _permutation.get(beforeper);
-        return alphabet().toInt(afterper);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char beforepr = alphabet().toChar(c);
-        char afterpr = getKeyByValue(_permutation, beforepr);
-        return alphabet().toInt(afterpr);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        return _permutation.get(p);
+        return sameCase(p, _alphabet.toChar(_forward[index(p)]));
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        return getKeyByValue(_permutation, c);
+        return sameCase(c, _alphabet.toChar(_inverse[index(c)]));
+    }
+
+    /** Return the index of C in my alphabet, accepting a lower-case C
+     *  whose upper-case form is in the alphabet. */
+    private int index(char c) {
+        if (!_alphabet.contains(c)) {
+            char upper = Character.toUpperCase(c);
+            if (!_alphabet.contains(upper)) {
+                throw error("character '%c' not in alphabet", c);
+            }
+            c = upper;
+        }
+        return _alphabet.toInt(c);
+    }
+
+    /** Return RESULT in lower case if ORIGINAL was a lower-case character
+     *  that is only in my alphabet in its upper-case form. */
+    private char sameCase(char original, char result) {
+        if (!_alphabet.contains(original)
+            && Character.isLowerCase(original)) {
+            return Character.toLowerCase(result);
+        }
+        return result;
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -102,37 +165,39 @@ class Permutation {
         return _alphabet;
     }
 
-
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (Character key : _permutation.keySet()) {
-            if (key == _permutation.get(key)) {
+        for (int i = 0; i < _forward.length; i += 1) {
+            if (_forward[i] == i) {
                 return false;
             }
-        } return true;
+        }
+        return true;
     }
 
-    /** Alphabet of this permutation. */
-    private Alphabet _alphabet;
-
-    /** Storage of the permutation mappings. */
-    private HashMap<Character, Character> _permutation = new HashMap<>();
-
-    /** Helper function for using key to get value in hashmap.
-     * @return the key given the value of the hashmap.
-     * @param <T> this is the type parameter.
-     * @param <E> this is another type parameter.
-     * @param map this is the map given by T and E.
-     * @param value this is the input value.
-     *  */
-    public static <T, E> T getKeyByValue(Map<T, E> map, E value) {
-        for (Map.Entry<T, E> entry : map.entrySet()) {
-            if (Objects.equals(value, entry.getValue())) {
-                return entry.getKey();
-            }
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Permutation)) {
+            return false;
         }
-        return null;
+        Permutation other = (Permutation) obj;
+        return _alphabet == other._alphabet
+            && Arrays.equals(_forward, other._forward);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_forward);
     }
 
+    /** Alphabet of this permutation. */
+    private final Alphabet _alphabet;
+
+    /** The image of each index under this permutation. */
+    private final int[] _forward;
+
+    /** The image of each index under the inverse of this permutation. */
+    private final int[] _inverse;
+
 }
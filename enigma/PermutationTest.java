@@ -75,5 +75,26 @@ public class PermutationTest {
         assertFalse(perm.derangement());
     }
 
+    @Test
+    public void checkFreeCharacter() {
+        Alphabet free = new FreeCharacter("QWE@%");
+        perm = new Permutation("(Q@) (W%E)", free);
+        assertEquals('@', perm.permute('Q'));
+        assertEquals('W', perm.invert('%'));
+        assertEquals(4, perm.invert(2));
+        assertEquals(0, perm.permute(3));
+        assertTrue(perm.derangement());
+    }
+
+    @Test
+    public void checkLowerCase() {
+        perm = new Permutation("(aB) (cd) (EF)", UPPER);
+        assertEquals('B', perm.permute('A'));
+        assertEquals('A', perm.permute('B'));
+        assertEquals('D', perm.permute('C'));
+        assertEquals('c', perm.permute('d'));
+        assertEquals('e', perm.invert('f'));
+        assertEquals('G', perm.permute('G'));
+    }
 
 }
@@ -18,16 +18,4 @@ class Reflector extends FixedRotor {
         return true;
     }
 
-    @Override
-    int convertForward(int p) {
-        return permutation().permute(p);
-    }
-
-    @Override
-    void set(int posn) {
-        if (posn != 0) {
-            throw error("reflector has only one position");
-        }
-    }
-
 }
@@ -2,7 +2,11 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents a rotor in the enigma machine.  A rotor
+ *  is an immutable description of its wiring and type, which any number
+ *  of machines, on any number of threads, may share: the setting at
+ *  which a rotor sits in one of a machine's slots is kept by the
+ *  machine, and passed to the conversion methods here.
  *  @author nishuang
  */
 class Rotor {
@@ -11,7 +15,6 @@ class Rotor {
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
-        _setting = 0;
     }
 
     /** Return my name. */
@@ -44,47 +47,77 @@ class Rotor {
         return false;
     }
 
-    /** Return my current setting. */
-    int setting() {
-        return _setting;
+    /** Return the conversion of P (an integer in the range 0..size()-1)
+     *  according to my permutation when I am at setting POSN. */
+    int convertForward(int p, int posn) {
+        int[] table = forwardTable();
+        if (table != null) {
+            return table[posn * size() + p];
+        }
+        return _permutation.wrap(_permutation.permute(p + posn) - posn);
     }
 
-    /** Set setting() to POSN.  */
-    void set(int posn) {
-        _setting = posn;
+    /** Return the conversion of E (an integer in the range 0..size()-1)
+     *  according to the inverse of my permutation when I am at setting
+     *  POSN. */
+    int convertBackward(int e, int posn) {
+        int[] table = backwardTable();
+        if (table != null) {
+            return table[posn * size() + e];
+        }
+        return _permutation.wrap(_permutation.invert(e + posn) - posn);
     }
 
-    /** Set setting() to character CPOSN. */
-    void set(char cposn) {
-        _setting = alphabet().toInt(cposn);
+    /** Return my forward conversions for every setting, laid out so that
+     *  the conversion of P at setting S is at index S * size() + P, or
+     *  null if my alphabet is too large to tabulate. */
+    int[] forwardTable() {
+        if (_forward == null && size() <= MAX_TABLE_SIZE) {
+            buildTables();
+        }
+        return _forward;
     }
 
-    /** Return the conversion of P (an integer in the range 0..size()-1)
-     *  according to my permutation. */
-    int convertForward(int p) {
-        int firstCon = (p + setting()) % alphabet().size();
-        int secondCon = permutation().permute(firstCon);
-        return _permutation.wrap(secondCon - setting());
+    /** Return my backward conversions for every setting, laid out as for
+     *  forwardTable(), or null if my alphabet is too large to tabulate. */
+    int[] backwardTable() {
+        if (_forward == null && size() <= MAX_TABLE_SIZE) {
+            buildTables();
+        }
+        return _backward;
     }
 
-    /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
-    int convertBackward(int e) {
-        int firstCon = (e + setting()) % alphabet().size();
-        int secondCon = permutation().invert(firstCon);
-        return _permutation.wrap(secondCon - setting());
+    /** Fill in my forward and backward conversion tables. */
+    private synchronized void buildTables() {
+        if (_forward != null) {
+            return;
+        }
+        int n = size();
+        int[] forward = new int[n * n];
+        int[] backward = new int[n * n];
+        for (int posn = 0; posn < n; posn += 1) {
+            for (int p = 0; p < n; p += 1) {
+                forward[posn * n + p] =
+                    _permutation.wrap(_permutation.permute(p + posn) - posn);
+                backward[posn * n + p] =
+                    _permutation.wrap(_permutation.invert(p + posn) - posn);
+            }
+        }
+        _backward = backward;
+        _forward = forward;
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
-     *  to advance. */
-    boolean atNotch() {
+     *  to advance when at setting POSN. */
+    boolean atNotch(int posn) {
         return false;
     }
 
-    /** Advance me one position, if possible. By default, does nothing. */
-    void advance() {
-        int adder = _setting + 1;
-        _setting = _permutation.wrap(adder);
+    /** Return the first setting at or after POSN, going round past the
+     *  last setting to 0, at which atNotch is true, or -1 if there is
+     *  none. */
+    int nextNotch(int posn) {
+        return -1;
     }
 
     @Override
@@ -96,9 +129,15 @@ class Rotor {
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
+    private final Permutation _permutation;
+
+    /** Largest alphabet size for which conversion tables are built. */
+    static final int MAX_TABLE_SIZE = 256;
+
+    /** Forward conversions for every setting (see forwardTable()). */
+    private volatile int[] _forward;
 
-    /** The setting position of the rotor. */
-    private int _setting;
+    /** Backward conversions for every setting (see backwardTable()). */
+    private volatile int[] _backward;
 
 }
@@ -0,0 +1,164 @@
+package enigma;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running conversion service for one machine configuration.
+ *  Each connection is a session: the client sends input in the format
+ *  Main reads (settings lines followed by messages) and receives the
+ *  output Main would write, after which the server closes the
+ *  connection.  An error ends the session with a line "Error: MESSAGE".
+ *  Every session runs on its own thread with its own machine state,
+ *  all copied from one loaded configuration and sharing one cache of
+ *  configured machines.
+ *  @author nishuang
+ */
+class Server implements Closeable {
+
+    /** A server for copies of the unconfigured machine MADE, accepting
+     *  sessions on CHANNEL. */
+    Server(Machine made, ServerSocketChannel channel) {
+        _made = made;
+        _channel = channel;
+        _sessions = sessionExecutor();
+    }
+
+    /** Return a server channel bound to WHERE, which is either a TCP port
+     *  number on the loopback interface (0 for any free port) or
+     *  "unix:PATH" for a Unix domain socket at PATH. */
+    static ServerSocketChannel open(String where) {
+        try {
+            if (where.startsWith("unix:")) {
+                Path path = Path.of(where.substring("unix:".length()));
+                Files.deleteIfExists(path);
+                ServerSocketChannel result =
+                    ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                result.bind(UnixDomainSocketAddress.of(path), BACKLOG);
+                return result;
+            }
+            int port;
+            try {
+                port = Integer.parseInt(where);
+            } catch (NumberFormatException excp) {
+                throw error("expected a port or unix:PATH, not %s", where);
+            }
+            ServerSocketChannel result = ServerSocketChannel.open();
+            result.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                              port), BACKLOG);
+            return result;
+        } catch (IOException excp) {
+            throw error("could not listen on %s: %s", where,
+                        excp.getMessage());
+        }
+    }
+
+    /** Return an executor that runs each task on a new virtual thread,
+     *  where the runtime provides them, and otherwise on a cached pool
+     *  of platform threads. */
+    static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException
+                 excp) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "enigma-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Return the address on which I accept sessions. */
+    SocketAddress address() {
+        try {
+            return _channel.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("server closed");
+        }
+    }
+
+    /** Accept sessions and start each on its own thread, until I am
+     *  closed. */
+    void serve() {
+        try {
+            while (true) {
+                SocketChannel client = _channel.accept();
+                _sessions.execute(() -> session(client));
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        } catch (IOException excp) {
+            throw error("could not accept connection: %s", excp.getMessage());
+        }
+    }
+
+    /** Convert the input from CLIENT, sending it the output, and close
+     *  it. */
+    private void session(SocketChannel client) {
+        try (client) {
+            Reader input = new InputStreamReader(
+                Channels.newInputStream(client), StandardCharsets.UTF_8);
+            Writer output = new OutputStreamWriter(
+                Channels.newOutputStream(client), StandardCharsets.UTF_8);
+            try {
+                new Main(input, output, _settingsCache).process(_made);
+            } catch (EnigmaException excp) {
+                output.write(String.format("Error: %s%n", excp.getMessage()));
+                output.flush();
+            }
+        } catch (IOException excp) {
+            /* The client has gone; nothing more to do. */
+            return;
+        }
+    }
+
+    /** Stop accepting sessions.  Sessions in progress run to
+     *  completion. */
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            /* Closing anyway. */
+        }
+        _sessions.shutdown();
+    }
+
+    /** Largest number of connections waiting to be accepted. */
+    static final int BACKLOG = 1 << 12;
+
+    /** Unconfigured machine copied by each session. */
+    private final Machine _made;
+
+    /** Channel on which sessions are accepted. */
+    private final ServerSocketChannel _channel;
+
+    /** Runs sessions. */
+    private final ExecutorService _sessions;
+
+    /** Configured machines shared by all sessions. */
+    private final SettingsCache _settingsCache =
+        new SettingsCache(Main.DEFAULT_SETTINGS_CACHE);
+
+}
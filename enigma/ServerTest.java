@@ -0,0 +1,104 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/** The suite of all JUnit tests for the Server class.
+ *  @Shuang
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return an unconfigured machine with reflector B, fixed rotor BETA
+     *  and moving rotors I, III and IV. */
+    private Machine machine() {
+        Alphabet upper = new CharacterRange('A', 'Z');
+        Collection<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(
+            "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) (SZ) "
+            + "(TV)", upper)));
+        rotors.add(new FixedRotor("BETA", new Permutation(
+            "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)", upper)));
+        rotors.add(new MovingRotor("I", new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", upper), "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(
+            "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", upper), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+            "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", upper), "J"));
+        return new Machine(upper, 5, 3, rotors);
+    }
+
+    /** Return the response of the server at SERVER to a session sending
+     *  INPUT. */
+    private String session(Server server, String input) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(server.address())) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(input.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            channel.shutdownOutput();
+            InputStream in = Channels.newInputStream(channel);
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            in.transferTo(response);
+            return response.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void checksessions() throws Exception {
+        String nl = System.lineSeparator();
+        Machine made = machine();
+        Thread acceptor;
+        try (Server server = new Server(made, Server.open("0"))) {
+            acceptor = new Thread(server::serve);
+            acceptor.start();
+            ExecutorService clients = Executors.newFixedThreadPool(8);
+            List<Future<String>> responses = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int k = 0; k < 32; k += 1) {
+                String setting = "" + (char) ('A' + k % 26) + "XLE";
+                String msg = "FROMHISSHOULDERHIAWATHA" + (char) ('A' + k / 2);
+                Machine M = new Machine(made);
+                M.insertRotors(new String[] { "B", "BETA", "III", "IV", "I" });
+                M.setRotors(setting);
+                M.setPlugboard(new Permutation("(HQ) (EX)", made.alphabet()));
+                String converted = M.convert(msg);
+                expected.add(converted.substring(0, 5) + " "
+                             + converted.substring(5, 10) + " "
+                             + converted.substring(10, 15) + " "
+                             + converted.substring(15, 20) + " "
+                             + converted.substring(20) + nl);
+                String input = "* B BETA III IV I " + setting + " (HQ) (EX)\n"
+                    + msg + "\n";
+                responses.add(clients.submit(() -> session(server, input)));
+            }
+            for (int k = 0; k < expected.size(); k += 1) {
+                assertEquals(expected.get(k), responses.get(k).get());
+            }
+            assertEquals("Error: Invalid rotor name." + nl,
+                         session(server, "* B BETA III IV XX AXLE\nABC\n"));
+            clients.shutdown();
+        }
+        acceptor.join();
+    }
+
+}
@@ -0,0 +1,119 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A bounded cache of configured machines keyed by the settings lines
+ *  that configured them, evicting the least recently used machine when
+ *  full.  The cached machines serve only as templates: callers copy
+ *  them (see Machine(Machine)) and never modify them.  The cache may be
+ *  used from several threads at once.
+ *  @author nishuang
+ */
+class SettingsCache {
+
+    /** A cache holding at most CAPACITY machines. */
+    SettingsCache(int capacity) {
+        _capacity = capacity;
+        _machines = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Machine> eldest) {
+                if (size() > _capacity) {
+                    _evictions += 1;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Return the machine cached under KEY, or null if there is none. */
+    synchronized Machine get(String key) {
+        Machine result = _machines.get(key);
+        if (result == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return result;
+    }
+
+    /** Cache MACHINE under KEY. */
+    synchronized void put(String key, Machine machine) {
+        _machines.put(key, machine);
+    }
+
+    /** Return the largest number of machines I hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of machines I hold. */
+    synchronized int size() {
+        return _machines.size();
+    }
+
+    /** Return the number of calls to get that found a machine. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of calls to get that found none. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of machines evicted to make room for others. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Return KEY with each run of whitespace replaced by one blank and
+     *  trailing whitespace removed.  Settings lines that differ only in
+     *  these ways configure a machine identically, while leading
+     *  whitespace (which does affect the outcome) stays distinct.
+     *  Whitespace is what separates the fields of a settings line in
+     *  Main.setUp (the regular expression \s), not every character for
+     *  which Character.isWhitespace holds, so that a line setUp would
+     *  reject never shares a key with one it accepts. */
+    static String normalize(String key) {
+        StringBuilder result = new StringBuilder(key.length());
+        boolean space = false;
+        for (int i = 0; i < key.length(); i += 1) {
+            char c = key.charAt(i);
+            if (isSeparator(c)) {
+                space = true;
+            } else {
+                if (space) {
+                    result.append(' ');
+                    space = false;
+                }
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return true iff C matches the regular expression \s. */
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b'
+            || c == '\f' || c == '\r';
+    }
+
+    /** Largest number of machines held. */
+    private final int _capacity;
+
+    /** Cached machines, least recently used first. */
+    private final LinkedHashMap<String, Machine> _machines;
+
+    /** Number of calls to get that found a machine. */
+    private long _hits;
+
+    /** Number of calls to get that found none. */
+    private long _misses;
+
+    /** Number of machines evicted. */
+    private long _evictions;
+
+}
@@ -0,0 +1,54 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+/** The suite of all JUnit tests for the SettingsCache class.
+ *  @Shuang
+ */
+public class SettingsCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return an unconfigured machine with no rotors. */
+    private Machine machine() {
+        return new Machine(new CharacterRange('A', 'Z'), 2, 1,
+                           new ArrayList<>());
+    }
+
+    @Test
+    public void checkEviction() {
+        SettingsCache cache = new SettingsCache(2);
+        Machine a = machine(), b = machine(), c = machine();
+        assertNull(cache.get("* A"));
+        cache.put("* A", a);
+        cache.put("* B", b);
+        assertSame(a, cache.get("* A"));
+        cache.put("* C", c);
+        assertNull(cache.get("* B"));
+        assertSame(a, cache.get("* A"));
+        assertSame(c, cache.get("* C"));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void checkNormalize() {
+        assertEquals("* B BETA I AXLE (AB)",
+                     SettingsCache.normalize("*  B\tBETA I AXLE (AB) \t"));
+        assertEquals(" * B", SettingsCache.normalize("\t * B"));
+        assertEquals("* B\u2028BETA",
+                     SettingsCache.normalize("* B\u2028BETA"));
+        assertEquals("* B \u001fBETA",
+                     SettingsCache.normalize("* B\t\u001fBETA"));
+    }
+
+}
@@ -0,0 +1,187 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** Reads and writes compiled machine configurations: binary files that
+ *  hold the alphabet, the numbers of slots and pawls, and each rotor's
+ *  name, type, notches and permutation as a table of indices, so that
+ *  a machine can be rebuilt without parsing any text.  A snapshot is
+ *  laid out (big-endian) as
+ *  <pre>
+ *      int MAGIC, int VERSION,
+ *      byte RANGE, char first, char last  |  byte FREE, string chars,
+ *      int slots, int pawls, int rotors,
+ *      per rotor: string name, byte type, [string notches,] int[] table
+ *  </pre>
+ *  where a string is an int length followed by that many chars, and
+ *  each table has one int per character of the alphabet.
+ *  @author nishuang
+ */
+class Snapshot {
+
+    /** First four bytes of every snapshot ("ENIG"). */
+    static final int MAGIC = 0x454e4947;
+
+    /** Version of the snapshot format written by this class. */
+    static final int VERSION = 1;
+
+    /** Alphabet kinds. */
+    private static final byte RANGE = 0, FREE = 1;
+
+    /** Rotor types. */
+    private static final byte PLAIN = 'P', MOVING = 'M', FIXED = 'N',
+        REFLECTOR = 'R';
+
+    /** Return true iff the file named NAME begins with MAGIC. */
+    static boolean isSnapshot(String name) {
+        try (RandomAccessFile file = new RandomAccessFile(name, "r")) {
+            return file.length() >= 4 && file.readInt() == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Write the configuration of the unconfigured machine MADE to the
+     *  file named NAME. */
+    static void write(Machine made, String name) {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Alphabet alphabet = made.alphabet();
+            if (alphabet instanceof CharacterRange) {
+                out.writeByte(RANGE);
+                out.writeChar(((CharacterRange) alphabet).first());
+                out.writeChar(((CharacterRange) alphabet).last());
+            } else if (alphabet instanceof FreeCharacter) {
+                out.writeByte(FREE);
+                writeString(out, ((FreeCharacter) alphabet).characters());
+            } else {
+                throw error("cannot compile alphabet %s", alphabet);
+            }
+            out.writeInt(made.numRotors());
+            out.writeInt(made.numPawls());
+            out.writeInt(made.allRotors().size());
+            for (Rotor rotor : made.allRotors()) {
+                writeString(out, rotor.name());
+                if (rotor instanceof MovingRotor) {
+                    out.writeByte(MOVING);
+                    writeString(out, ((MovingRotor) rotor).notches());
+                } else if (rotor instanceof Reflector) {
+                    out.writeByte(REFLECTOR);
+                } else if (rotor instanceof FixedRotor) {
+                    out.writeByte(FIXED);
+                } else {
+                    out.writeByte(PLAIN);
+                }
+                Permutation perm = rotor.permutation();
+                for (int i = 0; i < perm.size(); i += 1) {
+                    out.writeInt(perm.permute(i));
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return an unconfigured machine built from the snapshot in the
+     *  file named NAME, which is mapped into memory rather than read. */
+    static Machine read(String name) {
+        try (FileChannel channel = new RandomAccessFile(name, "r")
+                 .getChannel()) {
+            MappedByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(data);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return an unconfigured machine built from the snapshot in DATA. */
+    static Machine read(ByteBuffer data) {
+        try {
+            if (data.getInt() != MAGIC) {
+                throw error("not a compiled configuration");
+            }
+            int version = data.getInt();
+            if (version != VERSION) {
+                throw error("compiled configuration has version %d, not %d",
+                            version, VERSION);
+            }
+            Alphabet alphabet;
+            byte kind = data.get();
+            if (kind == RANGE) {
+                alphabet = new CharacterRange(data.getChar(), data.getChar());
+            } else if (kind == FREE) {
+                alphabet = new FreeCharacter(readString(data));
+            } else {
+                throw error("unknown alphabet kind %d", kind);
+            }
+            int slots = data.getInt(), pawls = data.getInt();
+            int count = data.getInt();
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            int[] table = new int[alphabet.size()];
+            for (int k = 0; k < count; k += 1) {
+                String rotorName = readString(data);
+                byte type = data.get();
+                String notches = type == MOVING ? readString(data) : null;
+                for (int i = 0; i < table.length; i += 1) {
+                    table[i] = data.getInt();
+                }
+                Permutation perm = new Permutation(table, alphabet);
+                switch (type) {
+                case MOVING:
+                    rotors.add(new MovingRotor(rotorName, perm, notches));
+                    break;
+                case REFLECTOR:
+                    rotors.add(new Reflector(rotorName, perm));
+                    break;
+                case FIXED:
+                    rotors.add(new FixedRotor(rotorName, perm));
+                    break;
+                case PLAIN:
+                    rotors.add(new Rotor(rotorName, perm));
+                    break;
+                default:
+                    throw error("unknown rotor type %d", type);
+                }
+            }
+            return new Machine(alphabet, slots, pawls, rotors);
+        } catch (BufferUnderflowException excp) {
+            throw error("compiled configuration truncated");
+        }
+    }
+
+    /** Write S to OUT as its length followed by its characters. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    /** Return the next string from DATA, in the form written by
+     *  writeString. */
+    private static String readString(ByteBuffer data) {
+        int len = data.getInt();
+        if (len < 0 || len > data.remaining() / 2) {
+            throw error("compiled configuration truncated");
+        }
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i += 1) {
+            chars[i] = data.getChar();
+        }
+        return new String(chars);
+    }
+
+}
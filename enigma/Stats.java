@@ -0,0 +1,153 @@
+package enigma;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/** Statistics about a run, printed at its end by the --stats option:
+ *  conversion throughput, the distribution of the time taken by each
+ *  section of input (a settings line and the messages it governs), how
+ *  often each rotor slot moved, how much memory was allocated, and how
+ *  well the cache of configured machines served the settings lines.
+ *  Sections may be recorded from several threads at once.
+ *  @author nishuang
+ */
+class Stats {
+
+    /** Statistics starting now. */
+    Stats() {
+        _start = System.nanoTime();
+    }
+
+    /** Return a new section, beginning now on the current thread, that
+     *  is converted by M from its current settings. */
+    Section begin(Machine M) {
+        return new Section(new Machine(M));
+    }
+
+    /** A section being recorded. */
+    class Section {
+
+        /** A section converted by a machine starting as START. */
+        private Section(Machine start) {
+            _machine = start;
+            _begun = System.nanoTime();
+            _allocatedBefore = allocatedBytes();
+        }
+
+        /** Record the conversion of CHARACTERS characters. */
+        void converted(int characters) {
+            _characters += characters;
+        }
+
+        /** Finish recording, on the thread that began. */
+        void end() {
+            long nanos = System.nanoTime() - _begun;
+            long allocated = allocatedBytes() - _allocatedBefore;
+            long[] steps = new long[_machine.numRotors()];
+            long doubleSteps = _machine.countSteps(_characters, steps);
+            record(nanos, _characters, steps, doubleSteps, allocated);
+        }
+
+        /** Copy of the machine as it was when the section began. */
+        private final Machine _machine;
+
+        /** Time at which the section began. */
+        private final long _begun;
+
+        /** Bytes allocated by the current thread when the section began. */
+        private final long _allocatedBefore;
+
+        /** Number of characters converted. */
+        private long _characters;
+
+    }
+
+    /** Add a section that took NANOS nanoseconds to convert CHARACTERS
+     *  characters, moving slot I STEPS[I] times with DOUBLESTEPS double
+     *  steps, and allocating ALLOCATED bytes. */
+    private synchronized void record(long nanos, long characters, long[] steps,
+                                     long doubleSteps, long allocated) {
+        _latency.record(nanos);
+        _characters += characters;
+        if (_steps.length < steps.length) {
+            _steps = Arrays.copyOf(_steps, steps.length);
+        }
+        for (int i = 0; i < steps.length; i += 1) {
+            _steps[i] += steps[i];
+        }
+        _doubleSteps += doubleSteps;
+        _allocated += allocated;
+    }
+
+    /** Print my statistics, and the counts kept by CACHE, to OUT. */
+    synchronized void print(PrintStream out, SettingsCache cache) {
+        double seconds = (System.nanoTime() - _start) / 1e9;
+        out.printf("stats: %d characters in %.3f s (%.0f characters/s)%n",
+                   _characters, seconds, _characters / seconds);
+        out.printf("stats: %d sections, latency ms p50 %.3f p90 %.3f "
+                   + "p99 %.3f max %.3f%n", _latency.count(),
+                   _latency.percentile(50) / 1e6,
+                   _latency.percentile(90) / 1e6,
+                   _latency.percentile(99) / 1e6, _latency.max() / 1e6);
+        StringBuilder steps = new StringBuilder();
+        for (long count : _steps) {
+            steps.append(' ').append(count);
+        }
+        out.printf("stats: rotor steps by slot:%s; double steps: %d%n",
+                   steps, _doubleSteps);
+        if (ALLOCATION == null) {
+            out.printf("stats: allocation not measurable%n");
+        } else {
+            out.printf("stats: %.1f MB allocated converting%n",
+                       _allocated / 1e6);
+        }
+        out.printf("stats: settings cache %d hits, %d misses, %d evictions;"
+                   + " %d of %d machines held%n", cache.hits(),
+                   cache.misses(), cache.evictions(), cache.size(),
+                   cache.capacity());
+    }
+
+    /** Return the number of bytes allocated so far by the current
+     *  thread, or 0 if that cannot be measured. */
+    private static long allocatedBytes() {
+        return ALLOCATION == null ? 0
+            : ALLOCATION.getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+
+    /** Source of per-thread allocation counts, or null if there is
+     *  none. */
+    private static final com.sun.management.ThreadMXBean ALLOCATION;
+
+    static {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads)
+                .isThreadAllocatedMemorySupported()) {
+            ALLOCATION = (com.sun.management.ThreadMXBean) threads;
+        } else {
+            ALLOCATION = null;
+        }
+    }
+
+    /** Time at which recording began. */
+    private final long _start;
+
+    /** Distribution of section times, in nanoseconds. */
+    private final Histogram _latency = new Histogram();
+
+    /** Number of characters converted. */
+    private long _characters;
+
+    /** Number of times each slot moved. */
+    private long[] _steps = new long[0];
+
+    /** Number of double steps. */
+    private long _doubleSteps;
+
+    /** Number of bytes allocated while converting. */
+    private long _allocated;
+
+}
@@ -10,7 +10,13 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(PermutationTest.class, MovingRotorTest.class,
+                          MachineTest.class, GroupFormatterTest.class,
+                          SettingsCacheTest.class, BombeTest.class,
+                          AttackTest.class, ServerTest.class,
+                          HistogramTest.class, BinaryFilesTest.class,
+                          MachineBatchTest.class, LineReaderTest.class,
+                          ConfigReaderTest.class, MainTest.class);
     }
 
 }